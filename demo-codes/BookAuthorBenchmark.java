@@ -0,0 +1,160 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Compares two ways of keeping the Book Authors tab current: running the three-table join
+ * again after every change, as the library manager used to, and the materialized
+ * BookAuthorView, which runs it once and then applies each change in memory.
+ *
+ * The library tables are created at the latest schema version and seeded with rowCount
+ * books and links and rowCount / 10 authors. The benchmark reports the median time to run
+ * the join into ColumnarRows, the time to build the view once, and then the median time
+ * for the view to apply each kind of change. With the join, every one of those changes
+ * costs a full join again.
+ *
+ * The tables live in a ScratchDatabase, which must be empty and is emptied again at the end.
+ *
+ * Usage: java -Xmx2g -Djdbc.url=... BookAuthorBenchmark [rowCount]   (default 1000000)
+ */
+public class BookAuthorBenchmark {
+
+    private static final int LOADS = 5;
+    private static final int CHANGES = 20;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int authors = Math.max(1, rows / 10);
+
+        try (ScratchDatabase db = ScratchDatabase.open()) {
+            if (db == null) {
+                return;
+            }
+            ConnectionPool pool = db.getPool();
+            int fetchSize = db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 1000;
+            try (Connection connection = pool.getConnection()) {
+                LibraryManagementSystem.SCHEMA.migrate(connection);
+            }
+            long start = System.nanoTime();
+            seed(db, rows, authors);
+            System.out.printf("Seeded %d books and links, %d authors in %.1f s%n", rows, authors,
+                    (System.nanoTime() - start) / 1e9);
+
+            double[] joinMillis = new double[LOADS];
+            double[] viewMillis = new double[LOADS];
+            BookAuthorView view = new BookAuthorView();
+            for (int run = 0; run < LOADS; run++) {
+                try (Connection connection = pool.getConnection();
+                     Statement stmt = connection.createStatement()) {
+                    stmt.setFetchSize(fetchSize);
+                    start = System.nanoTime();
+                    ResultSet rs = stmt.executeQuery("SELECT Books.title, Authors.first_name, Authors.last_name " +
+                            "FROM BooksAuthors JOIN Books ON BooksAuthors.book_id = Books.book_id " +
+                            "JOIN Authors ON BooksAuthors.author_id = Authors.author_id");
+                    ColumnarRows joined = ColumnarRows.read(rs, 256, new StringPool(100_000), null);
+                    rs.close();
+                    joinMillis[run] = (System.nanoTime() - start) / 1e6;
+                    check(joined.getRowCount(), rows);
+
+                    start = System.nanoTime();
+                    view.setContents(BookAuthorView.load(stmt, new StringPool(100_000), null));
+                    viewMillis[run] = (System.nanoTime() - start) / 1e6;
+                    check(view.getRowCount(), rows);
+                }
+            }
+            System.out.printf("%n%-34s %12s%n", "Median time", "ms");
+            System.out.printf("%-34s %12.1f%n", "Run the join (every change)", ScratchDatabase.median(joinMillis));
+            System.out.printf("%-34s %12.1f%n", "Build the view (once)", ScratchDatabase.median(viewMillis));
+
+            // The changes themselves are applied to the view only: the database write is
+            // the same either way
+            System.out.printf("%-34s %12.4f%n", "View: rename a book", time(run -> view.bookUpdated(
+                    1 + run * (rows / CHANGES), "Renamed " + run)));
+            System.out.printf("%-34s %12.4f%n", "View: rename an author", time(run -> view.authorUpdated(
+                    1 + run, "First", "Renamed " + run)));
+            System.out.printf("%-34s %12.4f%n", "View: add a link", time(run -> view.linkInserted(
+                    rows + 1 + run, 1 + run, 1 + (run + 1) % authors, "Title", "First", "Last")));
+            System.out.printf("%-34s %12.4f%n", "View: remove a link", time(run -> view.linkDeleted(
+                    1 + run * (rows / CHANGES))));
+            System.out.printf("%-34s %12.4f%n", "View: delete a book", time(run -> view.booksDeleted(
+                    new int[]{2 + run * (rows / CHANGES)})));
+            System.out.printf("%-34s %12.4f%n", "View: show 40 visible rows", time(run -> {
+                for (int row = run * 1000; row < run * 1000 + 40; row++) {
+                    for (int column = 0; column < 3; column++) {
+                        view.getValueAt(row, column);
+                    }
+                }
+            }));
+        }
+    }
+
+    private static void seed(ScratchDatabase db, int rows, int authors) throws SQLException {
+        try (Connection connection = db.getPool().getConnection()) {
+            connection.setAutoCommit(false);
+            PreparedStatement pstmt = connection.prepareStatement(
+                    "INSERT INTO Authors (author_id, first_name, last_name) VALUES (?, ?, ?)");
+            for (int i = 1; i <= authors; i++) {
+                pstmt.setInt(1, i);
+                pstmt.setString(2, "First" + (i % 500));
+                pstmt.setString(3, "Last" + i);
+                pstmt.addBatch();
+                if (i % 5_000 == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            connection.commit();
+            pstmt.close();
+        }
+        db.inChunks(rows, 100_000, (connection, from, to) -> {
+            PreparedStatement bookStmt = connection.prepareStatement(
+                    "INSERT INTO Books (book_id, title) VALUES (?, ?)");
+            PreparedStatement linkStmt = connection.prepareStatement(
+                    "INSERT INTO BooksAuthors (id, book_id, author_id) VALUES (?, ?, ?)");
+            for (int i = from; i <= to; i++) {
+                bookStmt.setInt(1, i);
+                bookStmt.setString(2, "Title " + i);
+                bookStmt.addBatch();
+                linkStmt.setInt(1, i);
+                linkStmt.setInt(2, i);
+                linkStmt.setInt(3, 1 + i % authors);
+                linkStmt.addBatch();
+                if (i % 5_000 == 0) {
+                    bookStmt.executeBatch();
+                    linkStmt.executeBatch();
+                    connection.commit();
+                }
+            }
+            bookStmt.executeBatch();
+            linkStmt.executeBatch();
+            connection.commit();
+            bookStmt.close();
+            linkStmt.close();
+        });
+    }
+
+    private interface Change {
+        void apply(int run);
+    }
+
+    /**
+     * Median time in ms of CHANGES runs of change.
+     */
+    private static double time(Change change) {
+        double[] millis = new double[CHANGES];
+        for (int run = 0; run < CHANGES; run++) {
+            long start = System.nanoTime();
+            change.apply(run);
+            millis[run] = (System.nanoTime() - start) / 1e6;
+        }
+        return ScratchDatabase.median(millis);
+    }
+
+    private static void check(int actual, int expected) {
+        if (actual != expected) {
+            throw new IllegalStateException("Read " + actual + " rows, expected " + expected);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+import javax.swing.table.AbstractTableModel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Table model showing a materialized view of the book-author join, which is read from the
+ * database once and then kept current in memory instead of running the join again.
+ *
+ * load() streams the join a single time and stores it normalized: the links as three
+ * parallel int arrays sorted by link id, plus one title per book and one name per author.
+ * The join has no ORDER BY, because sorting a million ints in memory is much cheaper
+ * than having the database sort the joined rows.
+ * Cells are looked up when the JTable paints them, so showing the view costs nothing
+ * however many links there are. The code that changes the tables reports each committed
+ * change, and the view applies it:
+ *
+ *   - a renamed book or author is one map update, whatever the number of its links
+ *   - an added or removed link is a binary search and an array shift
+ *   - a deleted book or author drops its links in one pass over the arrays
+ *
+ * Changes reported while a load is running are applied to the rows on screen and also
+ * queued, then replayed on the loaded contents, so a change that committed after the join
+ * read its rows is not lost. Every change can safely be applied twice.
+ *
+ * Like any Swing model, it must only be used on the Event Dispatch Thread. load() runs in
+ * the background: call beginLoad() first, then setContents() or loadFailed(). Changes are
+ * queued for as long as the supplier given to beginLoad() says the load is running. The
+ * load may run again after a result, e.g. when a refresh was merged into a running one,
+ * and the changes made during that run are kept for its result. A load that ends without
+ * a result, e.g. because it was cancelled, stops the queuing the same way.
+ */
+public class BookAuthorView extends AbstractTableModel {
+
+    public static final String JOIN_SQL =
+            "SELECT BooksAuthors.id, BooksAuthors.book_id, BooksAuthors.author_id, " +
+                    "Books.title, Authors.first_name, Authors.last_name FROM BooksAuthors " +
+                    "JOIN Books ON BooksAuthors.book_id = Books.book_id " +
+                    "JOIN Authors ON BooksAuthors.author_id = Authors.author_id";
+
+    private static final String[] COLUMN_NAMES = {"Title", "First Name", "Last Name"};
+
+    /**
+     * The rows of the view. Built by load() off the Event Dispatch Thread, then owned by
+     * the model.
+     */
+    public static final class Contents {
+        private int[] linkIds;
+        private int[] bookIds;
+        private int[] authorIds;
+        private int size;
+        private final Map<Integer, String> titles = new HashMap<>();
+        // First and last name of each author
+        private final Map<Integer, String[]> authorNames = new HashMap<>();
+
+        private Contents(int capacity) {
+            linkIds = new int[capacity];
+            bookIds = new int[capacity];
+            authorIds = new int[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private int indexOf(int linkId) {
+            return Arrays.binarySearch(linkIds, 0, size, linkId);
+        }
+
+        private boolean renameBook(int bookId, String title) {
+            return titles.replace(bookId, title) != null;
+        }
+
+        private boolean renameAuthor(int authorId, String firstName, String lastName) {
+            return authorNames.replace(authorId, new String[]{firstName, lastName}) != null;
+        }
+
+        /**
+         * Adds the link, or replaces it if its id is already there. Returns its row.
+         */
+        private int putLink(int linkId, int bookId, int authorId, String title, String firstName, String lastName) {
+            titles.put(bookId, title);
+            authorNames.put(authorId, new String[]{firstName, lastName});
+            int pos = indexOf(linkId);
+            if (pos >= 0) {
+                bookIds[pos] = bookId;
+                authorIds[pos] = authorId;
+                return pos;
+            }
+            // New links usually have the highest id, so this is normally an append
+            pos = -pos - 1;
+            insertAt(pos, linkId, bookId, authorId);
+            return pos;
+        }
+
+        private void insertAt(int pos, int linkId, int bookId, int authorId) {
+            if (size == linkIds.length) {
+                int capacity = size + (size >> 1) + 16;
+                linkIds = Arrays.copyOf(linkIds, capacity);
+                bookIds = Arrays.copyOf(bookIds, capacity);
+                authorIds = Arrays.copyOf(authorIds, capacity);
+            }
+            System.arraycopy(linkIds, pos, linkIds, pos + 1, size - pos);
+            System.arraycopy(bookIds, pos, bookIds, pos + 1, size - pos);
+            System.arraycopy(authorIds, pos, authorIds, pos + 1, size - pos);
+            linkIds[pos] = linkId;
+            bookIds[pos] = bookId;
+            authorIds[pos] = authorId;
+            size++;
+        }
+
+        private void sortByLinkId() {
+            // Sort (link id, position) pairs, then move the rows into that order. Link ids
+            // are AUTO_INCREMENT values, so positive, and sort correctly in the high bits
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = ((long) linkIds[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            int[] sortedBookIds = new int[linkIds.length];
+            int[] sortedAuthorIds = new int[linkIds.length];
+            for (int i = 0; i < size; i++) {
+                int from = (int) order[i];
+                sortedBookIds[i] = bookIds[from];
+                sortedAuthorIds[i] = authorIds[from];
+                linkIds[i] = (int) (order[i] >>> 32);
+            }
+            bookIds = sortedBookIds;
+            authorIds = sortedAuthorIds;
+        }
+
+        /**
+         * Returns the row the link was in, or -1 if it was not there.
+         */
+        private int removeLink(int linkId) {
+            int pos = indexOf(linkId);
+            if (pos < 0) {
+                return -1;
+            }
+            System.arraycopy(linkIds, pos + 1, linkIds, pos, size - pos - 1);
+            System.arraycopy(bookIds, pos + 1, bookIds, pos, size - pos - 1);
+            System.arraycopy(authorIds, pos + 1, authorIds, pos, size - pos - 1);
+            size--;
+            return pos;
+        }
+
+        /**
+         * Removes every link whose value in keys (bookIds or authorIds) is one of ids.
+         * Returns the number of links removed.
+         */
+        private int removeLinksOf(int[] keys, int[] ids) {
+            int[] sorted = ids.clone();
+            Arrays.sort(sorted);
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (Arrays.binarySearch(sorted, keys[i]) < 0) {
+                    linkIds[kept] = linkIds[i];
+                    bookIds[kept] = bookIds[i];
+                    authorIds[kept] = authorIds[i];
+                    kept++;
+                }
+            }
+            int removed = size - kept;
+            size = kept;
+            return removed;
+        }
+
+        private int removeBooks(int[] ids) {
+            for (int id : ids) {
+                titles.remove(id);
+            }
+            return removeLinksOf(bookIds, ids);
+        }
+
+        private int removeAuthor(int id) {
+            authorNames.remove(id);
+            return removeLinksOf(authorIds, new int[]{id});
+        }
+    }
+
+    private Contents contents = new Contents(0);
+    // Changes made while a load is running; null when no load is running
+    private List<Consumer<Contents>> pending;
+    private BooleanSupplier loadRunning;
+
+    /**
+     * Runs the join and reads every row, using the statement's fetch size. The statement is
+     * left open.
+     *
+     * @param pool     shared by the author names, which repeat; may be shared across loads
+     * @param listener called every 1024 rows, e.g. to stop when the load is cancelled; may be null
+     */
+    public static Contents load(Statement stmt, StringPool pool, ColumnarRows.RowListener listener)
+            throws SQLException {
+        Contents contents = new Contents(1024);
+        try (ResultSet rs = stmt.executeQuery(JOIN_SQL)) {
+            while (rs.next()) {
+                int bookId = rs.getInt(2);
+                int authorId = rs.getInt(3);
+                contents.titles.putIfAbsent(bookId, rs.getString(4));
+                if (!contents.authorNames.containsKey(authorId)) {
+                    contents.authorNames.put(authorId,
+                            new String[]{pool.intern(rs.getString(5)), pool.intern(rs.getString(6))});
+                }
+                contents.insertAt(contents.size, rs.getInt(1), bookId, authorId);
+                if (listener != null && contents.size % 1024 == 0) {
+                    listener.rowRead(contents.size);
+                }
+            }
+        }
+        contents.sortByLinkId();
+        return contents;
+    }
+
+    /**
+     * Call before starting load(), so that changes from then on are kept for the result.
+     *
+     * @param running whether the load is still queued or running, including runs that
+     *                follow a result; changes are queued until it returns false
+     */
+    public void beginLoad(BooleanSupplier running) {
+        // A load that is still running is being replaced, so its changes apply to the new one
+        if (pending == null || !loadRunning.getAsBoolean()) {
+            pending = new ArrayList<>();
+        }
+        loadRunning = running;
+    }
+
+    /**
+     * Shows the loaded rows, after applying the changes made since beginLoad() or the
+     * previous result.
+     */
+    public void setContents(Contents loaded) {
+        if (pending != null) {
+            for (Consumer<Contents> change : pending) {
+                change.accept(loaded);
+            }
+            restartQueue();
+        }
+        contents = loaded;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Ends a run of the load that did not finish. The rows on screen stay as they are.
+     */
+    public void loadFailed() {
+        if (pending != null) {
+            restartQueue();
+        }
+    }
+
+    public void bookUpdated(int bookId, String title) {
+        change(c -> c.renameBook(bookId, title));
+        if (contents.renameBook(bookId, title)) {
+            fireAllRowsUpdated();
+        }
+    }
+
+    public void authorUpdated(int authorId, String firstName, String lastName) {
+        change(c -> c.renameAuthor(authorId, firstName, lastName));
+        if (contents.renameAuthor(authorId, firstName, lastName)) {
+            fireAllRowsUpdated();
+        }
+    }
+
+    public void booksDeleted(int[] bookIds) {
+        change(c -> c.removeBooks(bookIds));
+        if (contents.removeBooks(bookIds) > 0) {
+            fireTableDataChanged();
+        }
+    }
+
+    public void authorDeleted(int authorId) {
+        change(c -> c.removeAuthor(authorId));
+        if (contents.removeAuthor(authorId) > 0) {
+            fireTableDataChanged();
+        }
+    }
+
+    public void linkInserted(int linkId, int bookId, int authorId, String title, String firstName, String lastName) {
+        change(c -> c.putLink(linkId, bookId, authorId, title, firstName, lastName));
+        boolean existed = contents.indexOf(linkId) >= 0;
+        int row = contents.putLink(linkId, bookId, authorId, title, firstName, lastName);
+        if (existed) {
+            fireTableRowsUpdated(row, row);
+        } else {
+            fireTableRowsInserted(row, row);
+        }
+    }
+
+    public void linkDeleted(int linkId) {
+        change(c -> c.removeLink(linkId));
+        int row = contents.removeLink(linkId);
+        if (row >= 0) {
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    // A run that starts after this has committed changes in front of it, so it only needs
+    // the ones made from now on; change() drops the queue if no run follows
+    private void restartQueue() {
+        pending = new ArrayList<>();
+    }
+
+    private void change(Consumer<Contents> change) {
+        if (pending == null) {
+            return;
+        }
+        if (loadRunning.getAsBoolean()) {
+            pending.add(change);
+        } else {
+            // Finished or cancelled: no result will come to apply the changes to
+            pending = null;
+            loadRunning = null;
+        }
+    }
+
+    private void fireAllRowsUpdated() {
+        // Rows keep their positions, so the selection survives
+        if (contents.size > 0) {
+            fireTableRowsUpdated(0, contents.size - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return contents.size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) {
+            return contents.titles.get(contents.bookIds[row]);
+        }
+        String[] name = contents.authorNames.get(contents.authorIds[row]);
+        return name == null ? null : name[column - 1];
+    }
+}
@@ -0,0 +1,147 @@
+import javax.swing.table.DefaultTableModel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Vector;
+
+/**
+ * Compares loading a query result into a DefaultTableModel (one Vector of boxed values
+ * per row, as the demos used to do) with loading it into ColumnarRows.
+ *
+ * For each row count it reports the load time (best of three runs) and the heap retained
+ * by the loaded table. The rows are generated into a bench_rows table first; titles are
+ * unique while author names repeat, like a real library.
+ *
+ * Usage: java -Xmx2g -Djdbc.url=... ColumnarBenchmark [rowCount ...]   (default 100000 1000000)
+ */
+public class ColumnarBenchmark {
+
+    private static final String[] FIRST_NAMES = {"John", "Maria", "Wei", "Priya", "Mohammed", "Anna", "Kofi", "Yuki"};
+    private static final String[] LAST_NAMES = {"Smith", "Garcia", "Chen", "Patel", "Ali", "Novak", "Mensah", "Sato"};
+
+    public static void main(String[] args) throws Exception {
+        int[] rowCounts = args.length > 0 ? new int[args.length] : new int[]{100_000, 1_000_000};
+        for (int i = 0; i < args.length; i++) {
+            rowCounts[i] = Integer.parseInt(args[i]);
+        }
+        int maxRows = 0;
+        for (int rows : rowCounts) {
+            maxRows = Math.max(maxRows, rows);
+        }
+
+        String url = System.getProperty("jdbc.url", "jdbc:mysql://localhost:3308/library");
+        try (ConnectionPool pool = ConnectionPool.create(url, System.getProperty("jdbc.user", "root"),
+                System.getProperty("jdbc.password", ""))) {
+            createRows(pool, maxRows);
+            try {
+                System.out.printf("%n%-10s %-18s %12s %14s%n", "Rows", "Model", "Load (ms)", "Heap (MB)");
+                for (int rows : rowCounts) {
+                    measure(pool, rows, "DefaultTableModel", false);
+                    measure(pool, rows, "ColumnarRows", true);
+                }
+            } finally {
+                try (Connection connection = pool.getConnection()) {
+                    connection.createStatement().execute("DROP TABLE bench_rows");
+                }
+            }
+        }
+    }
+
+    private static void createRows(ConnectionPool pool, int rows) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            Statement stmt = connection.createStatement();
+            stmt.execute("DROP TABLE IF EXISTS bench_rows");
+            stmt.execute("CREATE TABLE bench_rows (id INT PRIMARY KEY, title VARCHAR(100), "
+                    + "first_name VARCHAR(50), last_name VARCHAR(50), publication_year INT, age INT)");
+            stmt.close();
+
+            connection.setAutoCommit(false);
+            PreparedStatement insert = connection.prepareStatement("INSERT INTO bench_rows VALUES (?, ?, ?, ?, ?, ?)");
+            for (int i = 1; i <= rows; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "Title " + i);
+                insert.setString(3, FIRST_NAMES[i % FIRST_NAMES.length]);
+                insert.setString(4, LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length]);
+                insert.setInt(5, 1900 + i % 125);
+                insert.setInt(6, 18 + i % 60);
+                insert.addBatch();
+                if (i % 5_000 == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+            insert.close();
+        }
+    }
+
+    private static void measure(ConnectionPool pool, int rows, String name, boolean columnar) throws SQLException {
+        long bestNanos = Long.MAX_VALUE;
+        long retainedBytes = 0;
+        for (int run = 0; run < 3; run++) {
+            long before = usedHeap();
+            long start = System.nanoTime();
+            Object table = columnar ? loadColumnar(pool, rows) : loadDefault(pool, rows);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            retainedBytes = usedHeap() - before;
+            // Keep the table reachable until it has been measured
+            if (rowCount(table) != rows) {
+                throw new IllegalStateException(name + " loaded " + rowCount(table) + " rows, expected " + rows);
+            }
+        }
+        System.out.printf("%-10d %-18s %12.1f %14.1f%n", rows, name, bestNanos / 1e6, retainedBytes / 1e6);
+    }
+
+    private static DefaultTableModel loadDefault(ConnectionPool pool, int rows) throws SQLException {
+        DefaultTableModel model = new DefaultTableModel(
+                new String[]{"ID", "Title", "First Name", "Last Name", "Year", "Age"}, 0);
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement pstmt = connection.prepareStatement(
+                    "SELECT id, title, first_name, last_name, publication_year, age FROM bench_rows WHERE id <= ?");
+            pstmt.setInt(1, rows);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Vector<Object> row = new Vector<>();
+                row.add(rs.getInt(1));
+                row.add(rs.getString(2));
+                row.add(rs.getString(3));
+                row.add(rs.getString(4));
+                row.add(rs.getInt(5));
+                row.add(rs.getInt(6));
+                model.addRow(row);
+            }
+            rs.close();
+            pstmt.close();
+        }
+        return model;
+    }
+
+    private static ColumnarRows loadColumnar(ConnectionPool pool, int rows) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement pstmt = connection.prepareStatement(
+                    "SELECT id, title, first_name, last_name, publication_year, age FROM bench_rows WHERE id <= ?");
+            pstmt.setInt(1, rows);
+            ResultSet rs = pstmt.executeQuery();
+            ColumnarRows result = ColumnarRows.read(rs, rows, new StringPool(100_000), null);
+            rs.close();
+            pstmt.close();
+            return result;
+        }
+    }
+
+    private static int rowCount(Object table) {
+        return table instanceof ColumnarRows
+                ? ((ColumnarRows) table).getRowCount() : ((DefaultTableModel) table).getRowCount();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,249 @@
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Read-only query result stored by column instead of by row.
+ *
+ * Integer columns (INT, SMALLINT, TINYINT) are kept in int[] arrays with a BitSet for
+ * NULLs; every other column is kept as a String[] whose values go through a StringPool.
+ * Compared with a Vector or Object[] per row this avoids one object per row, one boxed
+ * Integer per int cell and the duplicate copies of repeated names.
+ *
+ * Build one with read(), which copies a ResultSet straight into the column arrays.
+ * Instances never change; withRow() and withoutRow() return modified copies, for models
+ * that apply single-row changes without reading the whole result again.
+ */
+public class ColumnarRows {
+
+    /**
+     * Called while reading rows, e.g. to stop early when the read has been cancelled.
+     */
+    public interface RowListener {
+        void rowRead(int rowCount);
+    }
+
+    private static final ColumnarRows EMPTY = new ColumnarRows(new String[0], new int[0][], new String[0][],
+            new BitSet[0], 0);
+
+    private final String[] columnLabels;
+    // Exactly one of ints[c] and strings[c] is non-null for each column c
+    private final int[][] ints;
+    private final String[][] strings;
+    private final BitSet[] nulls;
+    private final int rowCount;
+
+    private ColumnarRows(String[] columnLabels, int[][] ints, String[][] strings, BitSet[] nulls, int rowCount) {
+        this.columnLabels = columnLabels;
+        this.ints = ints;
+        this.strings = strings;
+        this.nulls = nulls;
+        this.rowCount = rowCount;
+    }
+
+    public static ColumnarRows empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Reads all remaining rows of rs.
+     *
+     * @param expectedRows initial capacity; the arrays grow if more rows arrive
+     * @param pool         shared by all string columns; may be shared across reads
+     * @param listener     called every 1024 rows, may be null
+     */
+    public static ColumnarRows read(ResultSet rs, int expectedRows, StringPool pool, RowListener listener)
+            throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        String[] labels = new String[columns];
+        int[][] ints = new int[columns][];
+        String[][] strings = new String[columns][];
+        BitSet[] nulls = new BitSet[columns];
+
+        int capacity = Math.max(16, expectedRows);
+        for (int c = 0; c < columns; c++) {
+            labels[c] = meta.getColumnLabel(c + 1);
+            nulls[c] = new BitSet();
+            if (isIntType(meta.getColumnType(c + 1))) {
+                ints[c] = new int[capacity];
+            } else {
+                strings[c] = new String[capacity];
+            }
+        }
+
+        int row = 0;
+        while (rs.next()) {
+            if (row == capacity) {
+                capacity = capacity + (capacity >> 1);
+                for (int c = 0; c < columns; c++) {
+                    if (ints[c] != null) {
+                        ints[c] = Arrays.copyOf(ints[c], capacity);
+                    } else {
+                        strings[c] = Arrays.copyOf(strings[c], capacity);
+                    }
+                }
+            }
+            for (int c = 0; c < columns; c++) {
+                if (ints[c] != null) {
+                    ints[c][row] = rs.getInt(c + 1);
+                    if (rs.wasNull()) {
+                        nulls[c].set(row);
+                    }
+                } else {
+                    String value = pool.intern(rs.getString(c + 1));
+                    strings[c][row] = value;
+                    if (value == null) {
+                        nulls[c].set(row);
+                    }
+                }
+            }
+            row++;
+            if (listener != null && (row & 1023) == 0) {
+                listener.rowRead(row);
+            }
+        }
+
+        // Give back the unused tail if the estimate was far off
+        if (capacity - row > 64 && capacity > row + (row >> 3)) {
+            for (int c = 0; c < columns; c++) {
+                if (ints[c] != null) {
+                    ints[c] = Arrays.copyOf(ints[c], row);
+                } else {
+                    strings[c] = Arrays.copyOf(strings[c], row);
+                }
+            }
+        }
+        return new ColumnarRows(labels, ints, strings, nulls, row);
+    }
+
+    private static boolean isIntType(int sqlType) {
+        return sqlType == Types.INTEGER || sqlType == Types.SMALLINT || sqlType == Types.TINYINT;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnLabels.length;
+    }
+
+    public String getColumnLabel(int column) {
+        return columnLabels[column];
+    }
+
+    public boolean isIntColumn(int column) {
+        return ints[column] != null;
+    }
+
+    public boolean isNull(int row, int column) {
+        return nulls[column].get(row);
+    }
+
+    /**
+     * Value of an integer column; 0 for NULL, like ResultSet.getInt.
+     */
+    public int getInt(int row, int column) {
+        return ints[column][row];
+    }
+
+    /**
+     * Value of a string column, or of an integer column converted to text.
+     */
+    public String getString(int row, int column) {
+        if (ints[column] != null) {
+            return isNull(row, column) ? null : Integer.toString(ints[column][row]);
+        }
+        return strings[column][row];
+    }
+
+    /**
+     * Copy with one row replaced by values, or appended if row == getRowCount(). Values
+     * are in column order; integer columns take any Number.
+     */
+    public ColumnarRows withRow(int row, Object[] values, StringPool pool) {
+        if (row < 0 || row > rowCount || values.length != columnLabels.length) {
+            throw new IllegalArgumentException("Cannot set row " + row + " of " + rowCount + " to "
+                    + values.length + " values");
+        }
+        int newCount = Math.max(rowCount, row + 1);
+        int[][] newInts = new int[ints.length][];
+        String[][] newStrings = new String[strings.length][];
+        BitSet[] newNulls = new BitSet[nulls.length];
+        for (int c = 0; c < columnLabels.length; c++) {
+            newNulls[c] = (BitSet) nulls[c].clone();
+            newNulls[c].set(row, values[c] == null);
+            if (ints[c] != null) {
+                newInts[c] = Arrays.copyOf(ints[c], newCount);
+                newInts[c][row] = values[c] == null ? 0 : ((Number) values[c]).intValue();
+            } else {
+                newStrings[c] = Arrays.copyOf(strings[c], newCount);
+                newStrings[c][row] = values[c] == null ? null : pool.intern(values[c].toString());
+            }
+        }
+        return new ColumnarRows(columnLabels, newInts, newStrings, newNulls, newCount);
+    }
+
+    /**
+     * Copy without the given row; the rows after it move up by one.
+     */
+    public ColumnarRows withoutRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IllegalArgumentException("No row " + row + " in " + rowCount + " rows");
+        }
+        int newCount = rowCount - 1;
+        int[][] newInts = new int[ints.length][];
+        String[][] newStrings = new String[strings.length][];
+        BitSet[] newNulls = new BitSet[nulls.length];
+        for (int c = 0; c < columnLabels.length; c++) {
+            newNulls[c] = nulls[c].get(0, row);
+            BitSet tail = nulls[c].get(row + 1, rowCount);
+            for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+                newNulls[c].set(row + i);
+            }
+            if (ints[c] != null) {
+                newInts[c] = new int[newCount];
+                System.arraycopy(ints[c], 0, newInts[c], 0, row);
+                System.arraycopy(ints[c], row + 1, newInts[c], row, newCount - row);
+            } else {
+                newStrings[c] = new String[newCount];
+                System.arraycopy(strings[c], 0, newStrings[c], 0, row);
+                System.arraycopy(strings[c], row + 1, newStrings[c], row, newCount - row);
+            }
+        }
+        return new ColumnarRows(columnLabels, newInts, newStrings, newNulls, newCount);
+    }
+
+    /**
+     * Copy with the same columns and no rows.
+     */
+    public ColumnarRows withoutRows() {
+        int[][] newInts = new int[ints.length][];
+        String[][] newStrings = new String[strings.length][];
+        BitSet[] newNulls = new BitSet[nulls.length];
+        for (int c = 0; c < columnLabels.length; c++) {
+            newNulls[c] = new BitSet();
+            if (ints[c] != null) {
+                newInts[c] = new int[0];
+            } else {
+                newStrings[c] = new String[0];
+            }
+        }
+        return new ColumnarRows(columnLabels, newInts, newStrings, newNulls, 0);
+    }
+
+    /**
+     * Value as an object, for table models. Integers are boxed only here, for the
+     * cells that are actually shown.
+     */
+    public Object getValue(int row, int column) {
+        if (ints[column] != null) {
+            return isNull(row, column) ? null : Integer.valueOf(ints[column][row]);
+        }
+        return strings[column][row];
+    }
+}
@@ -0,0 +1,59 @@
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Read-only table model that displays a ColumnarRows result.
+ *
+ * Use it instead of a DefaultTableModel for query results: the cells stay in primitive
+ * column arrays and are only boxed when the JTable paints them. Replace the whole
+ * result with setRows(); the model fires a single table event for it.
+ */
+public class ColumnarTableModel extends AbstractTableModel {
+
+    private final String[] columnNames;
+    private ColumnarRows rows = ColumnarRows.empty();
+
+    public ColumnarTableModel(String... columnNames) {
+        this.columnNames = columnNames.clone();
+    }
+
+    /**
+     * Shows new rows. The result must have one column per column name, in the same order.
+     */
+    public void setRows(ColumnarRows rows) {
+        if (rows.getRowCount() > 0 && rows.getColumnCount() != columnNames.length) {
+            throw new IllegalArgumentException("Expected " + columnNames.length + " columns but got "
+                    + rows.getColumnCount());
+        }
+        this.rows = rows;
+        fireTableDataChanged();
+    }
+
+    public ColumnarRows getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.getRowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return rows.getRowCount() > 0 && rows.isIntColumn(column) ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return rows.getValue(row, column);
+    }
+}
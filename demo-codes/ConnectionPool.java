@@ -0,0 +1,642 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small JDBC connection pool shared by JDBCDemo, JDBCSwingDemo and LibraryManagementSystem.
+ *
+ * Borrow a connection with getConnection() and give it back by calling close() on it,
+ * ideally with try-with-resources. The pool keeps between minSize and maxSize physical
+ * connections, checks idle connections before handing them out, closes connections that
+ * stay idle too long, and warns about connections that are borrowed but never returned.
+ *
+ * When every connection is in use, borrowers wait in a FIFO queue. A returned connection,
+ * or room to open a new one, goes straight to the thread that has waited longest, so a
+ * thread that just arrived cannot take it first and no waiter starves until its timeout.
+ *
+ * Settings can be given as system properties:
+ *   jdbc.pool.minSize               connections kept open even when idle (default 1)
+ *   jdbc.pool.maxSize               maximum open connections (default 10)
+ *   jdbc.pool.borrowTimeoutMillis   how long getConnection() waits for a free connection (default 30000)
+ *   jdbc.pool.idleTimeoutMillis     idle time after which extra connections are closed (default 600000)
+ *   jdbc.pool.leakDetectionMillis   warn when a connection is held longer than this, 0 = off (default 60000)
+ *   jdbc.pool.statementCacheSize    prepared statements cached per connection, 0 = off (default 32)
+ *
+ * prepareStatement(String) on a borrowed connection goes through a per-connection
+ * PreparedStatementCache, so repeating the same SQL skips re-parsing it.
+ *
+ * Unless jdbc.metrics.enabled is false, every physical connection is wrapped by the pool's
+ * JdbcMetrics, which times each statement and keeps a slow query log; see getMetrics() and
+ * the jdbc.metrics.* properties there.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    // Connections used within this time are handed out again without a validation round-trip
+    private static final long VALIDATION_SKIP_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionMillis;
+    private final int statementCacheSize;
+    private final JdbcMetrics metrics;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final List<PooledConnection> borrowed = new ArrayList<>();
+    private int openCount;
+    // Threads blocked in getConnection() because every connection is in use, longest waiting first
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private boolean closed;
+
+    private final Thread housekeeper;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsClosed = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final PreparedStatementCache.Stats statementCacheStats = new PreparedStatementCache.Stats();
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long leakDetectionMillis,
+                          int statementCacheSize, JdbcMetrics metrics) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+        }
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakDetectionMillis = leakDetectionMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.metrics = metrics;
+
+        // Open the minimum number of connections up front so configuration errors show immediately
+        lock.lock();
+        try {
+            while (openCount < minSize) {
+                idle.push(new PooledConnection(openPhysicalConnection()));
+                openCount++;
+            }
+        } catch (SQLException e) {
+            closeAll();
+            if (metrics != null) {
+                metrics.close();
+            }
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+
+        housekeeper = new Thread(this::housekeepingLoop, "connection-pool-housekeeper");
+        housekeeper.setDaemon(true);
+        housekeeper.start();
+    }
+
+    /**
+     * Creates a pool for the given database using the jdbc.pool.* system properties.
+     */
+    public static ConnectionPool create(String url, String user, String password) throws SQLException {
+        return new ConnectionPool(url, user, password,
+                Integer.getInteger("jdbc.pool.minSize", 1),
+                Integer.getInteger("jdbc.pool.maxSize", 10),
+                Long.getLong("jdbc.pool.borrowTimeoutMillis", 30_000L),
+                Long.getLong("jdbc.pool.idleTimeoutMillis", 600_000L),
+                Long.getLong("jdbc.pool.leakDetectionMillis", 60_000L),
+                Integer.getInteger("jdbc.pool.statementCacheSize", 32),
+                JdbcMetrics.create(url));
+    }
+
+    /**
+     * Borrows a connection. Call close() on it to return it to the pool.
+     *
+     * @throws SQLTimeoutException if no connection became free within the borrow timeout
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean mayOpen = false;
+
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                if (waiters.isEmpty() && !idle.isEmpty()) {
+                    // Most recently used first, so idle extras age out and get evicted
+                    candidate = idle.pop();
+                } else if (waiters.isEmpty() && openCount < maxSize) {
+                    openCount++;
+                    mayOpen = true;
+                } else {
+                    Waiter waiter = await(deadline);
+                    candidate = waiter.connection;
+                    mayOpen = waiter.mayOpen;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (mayOpen) {
+                // Open the new connection outside the lock so other borrowers are not held up
+                try {
+                    candidate = new PooledConnection(openPhysicalConnection());
+                } catch (SQLException e) {
+                    lock.lock();
+                    try {
+                        releaseCapacity();
+                    } finally {
+                        lock.unlock();
+                    }
+                    throw e;
+                }
+            } else if (!isUsable(candidate)) {
+                validationFailures.incrementAndGet();
+                discard(candidate);
+                continue;
+            }
+
+            return lend(candidate, start);
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the pool's state and borrow metrics.
+     */
+    public String getStats() {
+        int idleCount;
+        int inUse;
+        int open;
+        int waitingCount;
+        lock.lock();
+        try {
+            idleCount = idle.size();
+            inUse = borrowed.size();
+            open = openCount;
+            waitingCount = waiters.size();
+        } finally {
+            lock.unlock();
+        }
+
+        long borrows = borrowCount.get();
+        double averageWaitMillis = borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+        return String.format("Pool[open=%d, inUse=%d, idle=%d, waiting=%d, max=%d] borrows=%d, avgWait=%.3f ms, "
+                        + "maxWait=%.3f ms, timeouts=%d, created=%d, closed=%d, validationFailures=%d, leaks=%d, %s",
+                open, inUse, idleCount, waitingCount, maxSize, borrows, averageWaitMillis, maxWaitNanos.get() / 1_000_000.0,
+                borrowTimeouts.get(), connectionsCreated.get(), connectionsClosed.get(),
+                validationFailures.get(), leaksDetected.get(), statementCacheStats);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of connections currently borrowed.
+     */
+    public int getInUseCount() {
+        lock.lock();
+        try {
+            return borrowed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of threads currently waiting in getConnection() for a connection to be returned.
+     */
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.get();
+    }
+
+    /**
+     * Statement timings and slow query log for all connections of this pool, or null if
+     * jdbc.metrics.enabled is false.
+     */
+    public JdbcMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Prepared statement cache counters for all connections of this pool.
+     */
+    public PreparedStatementCache.Stats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    /**
+     * Closes idle connections and stops handing out new ones. Borrowed connections are
+     * closed when they are returned.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Waiter waiter : waiters) {
+                waiter.ready.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.interrupt();
+        closeAll();
+        if (metrics != null) {
+            metrics.close();
+        }
+    }
+
+    private Connection openPhysicalConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        connectionsCreated.incrementAndGet();
+        return metrics != null ? metrics.wrap(connection) : connection;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastReturnedAt < VALIDATION_SKIP_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection lend(PooledConnection pooled, long borrowStart) {
+        long waited = System.nanoTime() - borrowStart;
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        pooled.borrowedAt = System.currentTimeMillis();
+        pooled.borrowedBy = leakDetectionMillis > 0 ? new Exception("Connection borrowed here") : null;
+        pooled.leakReported = false;
+
+        lock.lock();
+        try {
+            if (!borrowed.contains(pooled)) {
+                borrowed.add(pooled);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return pooled.newHandle();
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        boolean reusable = !pooled.broken;
+        if (pooled.statements != null) {
+            // Statements the borrower did not close go back to the cache
+            pooled.statements.releaseAll();
+        }
+        try {
+            // Undo anything the borrower changed so the next borrower gets a clean connection
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        lock.lock();
+        try {
+            borrowed.remove(pooled);
+            if (reusable && !closed) {
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                offer(pooled);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        discard(pooled);
+    }
+
+    private void discard(PooledConnection pooled) {
+        lock.lock();
+        try {
+            // A connection handed to a waiter already counts as borrowed
+            borrowed.remove(pooled);
+            releaseCapacity();
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(pooled);
+    }
+
+    /**
+     * Queues the calling thread and waits until a connection or room to open one is handed
+     * to it. Called with the lock held.
+     */
+    private Waiter await(long deadline) throws SQLException {
+        Waiter waiter = new Waiter(lock.newCondition());
+        waiters.addLast(waiter);
+        boolean served = false;
+        try {
+            while (waiter.connection == null && !waiter.mayOpen) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    borrowTimeouts.incrementAndGet();
+                    throw new SQLTimeoutException("No connection available within " + borrowTimeoutMillis
+                            + " ms (" + borrowed.size() + " of " + maxSize + " in use, "
+                            + (waiters.size() - 1) + " other threads waiting)");
+                }
+                waiter.ready.awaitNanos(remaining);
+            }
+            served = true;
+            return waiter;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            if (!served) {
+                waiters.remove(waiter);
+                // Something may have been handed over just as this thread gave up; pass it on
+                if (waiter.connection != null && !closed) {
+                    offer(waiter.connection);
+                } else if (waiter.connection != null) {
+                    borrowed.remove(waiter.connection);
+                    openCount--;
+                    closeQuietly(waiter.connection);
+                } else if (waiter.mayOpen) {
+                    releaseCapacity();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives an idle connection to the longest waiting thread, or keeps it for the next
+     * borrower. Called with the lock held.
+     */
+    private void offer(PooledConnection pooled) {
+        Waiter waiter = waiters.pollFirst();
+        if (waiter != null) {
+            // In use from now on, while the waiter wakes up
+            if (!borrowed.contains(pooled)) {
+                borrowed.add(pooled);
+            }
+            waiter.connection = pooled;
+            waiter.ready.signal();
+        } else {
+            borrowed.remove(pooled);
+            idle.push(pooled);
+        }
+    }
+
+    /**
+     * Accounts for a connection that was closed or could not be opened. The longest waiting
+     * thread may open one in its place. Called with the lock held.
+     */
+    private void releaseCapacity() {
+        Waiter waiter = closed ? null : waiters.pollFirst();
+        if (waiter != null) {
+            // openCount stays the same: the slot passes to the waiter
+            waiter.mayOpen = true;
+            waiter.ready.signal();
+        } else {
+            openCount--;
+        }
+    }
+
+
+    private void closeQuietly(PooledConnection pooled) {
+        if (pooled.statements != null) {
+            pooled.statements.closeAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Nothing useful to do; the connection is being thrown away
+        }
+        connectionsClosed.incrementAndGet();
+    }
+
+    private void closeAll() {
+        List<PooledConnection> toClose = new ArrayList<>();
+        lock.lock();
+        try {
+            toClose.addAll(idle);
+            openCount -= idle.size();
+            idle.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : toClose) {
+            closeQuietly(pooled);
+        }
+    }
+
+    private void housekeepingLoop() {
+        try {
+            while (true) {
+                Thread.sleep(5_000);
+                evictIdleConnections();
+                reportLeaks();
+                if (metrics != null) {
+                    metrics.dumpIfDue();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Pool closed
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+
+        lock.lock();
+        try {
+            // The oldest idle connections sit at the end of the deque
+            while (openCount > minSize && !idle.isEmpty()
+                    && now - idle.peekLast().lastReturnedAt > idleTimeoutMillis) {
+                expired.add(idle.pollLast());
+                openCount--;
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : expired) {
+            closeQuietly(pooled);
+        }
+    }
+
+    private void reportLeaks() {
+        if (leakDetectionMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<PooledConnection> leaked = new ArrayList<>();
+
+        lock.lock();
+        try {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakDetectionMillis) {
+                    pooled.leakReported = true;
+                    leaked.add(pooled);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : leaked) {
+            leaksDetected.incrementAndGet();
+            System.err.println("Possible connection leak: connection held for "
+                    + (now - pooled.borrowedAt) + " ms without being closed");
+            if (pooled.borrowedBy != null) {
+                pooled.borrowedBy.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A thread waiting in getConnection(). Guarded by the pool's lock.
+     */
+    private static final class Waiter {
+        final Condition ready;
+        // Handed over by the thread that returned it
+        PooledConnection connection;
+        // Set instead when a connection was closed, so this thread may open a new one
+        boolean mayOpen;
+
+        Waiter(Condition ready) {
+            this.ready = ready;
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool. Each borrow gets its own handle, so closing
+     * a handle twice, or using it after close, cannot affect the next borrower.
+     */
+    private final class PooledConnection {
+        final Connection physical;
+        final PreparedStatementCache statements;
+        long lastReturnedAt = System.currentTimeMillis();
+        long borrowedAt;
+        Exception borrowedBy;
+        boolean leakReported;
+        volatile boolean broken;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0
+                    ? new PreparedStatementCache(statementCacheSize, statementCacheStats) : null;
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + (returned ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                if (pooled.statements != null && method.getName().equals("prepareStatement") && args.length == 1) {
+                    return pooled.statements.prepare(pooled.physical, (String) args[0]);
+                }
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw checkBroken(e.getCause());
+            } catch (SQLException e) {
+                throw checkBroken(e);
+            }
+        }
+
+        private Throwable checkBroken(Throwable failure) {
+            // SQL state class 08 means the connection itself failed; do not reuse it
+            if (failure instanceof SQLException) {
+                String state = ((SQLException) failure).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    pooled.broken = true;
+                }
+            }
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams a CSV file into a database table with JDBC batches.
+ *
+ * The calling thread reads the file and cuts it into chunks of batchSize rows. A fixed
+ * number of writer threads take chunks from a small bounded queue. Each writer binds
+ * a chunk to its reused INSERT statement with addBatch(), runs executeBatch() and commits.
+ * Only a few chunks are ever in memory, so file size does not matter.
+ *
+ * For MySQL, pass the URL through withBatchRewriting(). That adds
+ * rewriteBatchedStatements=true so Connector/J sends each batch as multi-row INSERTs.
+ *
+ * Fields are bound as strings and converted by the database; an empty unquoted field is
+ * NULL. Quoted fields may contain commas and doubled quotes, but not line breaks.
+ *
+ * Settings can be given as system properties:
+ *   jdbc.import.batchSize   rows per executeBatch() and commit (default 1000)
+ *   jdbc.import.threads     writer threads, each holding one pooled connection (default 4);
+ *                           keep it at or below jdbc.pool.maxSize
+ *
+ * Usage: java -Djdbc.url=... CsvBulkImporter file.csv table column1,column2,... [--header]
+ */
+public class CsvBulkImporter {
+
+    /**
+     * Outcome of an import.
+     */
+    public static final class Result {
+        private final long rows;
+        private final long nanos;
+
+        Result(long rows, long nanos) {
+            this.rows = rows;
+            this.nanos = nanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        public double getRowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows in %.1f s (%.0f rows/s)", rows, getSeconds(), getRowsPerSecond());
+        }
+    }
+
+    private static final List<String[]> END_OF_INPUT = new ArrayList<>();
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final int threads;
+
+    public CsvBulkImporter(ConnectionPool pool, int batchSize, int threads) {
+        if (batchSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("Invalid batch size " + batchSize + " or thread count " + threads);
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Creates an importer using the jdbc.import.* system properties.
+     */
+    public static CsvBulkImporter create(ConnectionPool pool) {
+        return new CsvBulkImporter(pool,
+                Integer.getInteger("jdbc.import.batchSize", 1000),
+                Integer.getInteger("jdbc.import.threads", 4));
+    }
+
+    /**
+     * Returns url with MySQL batch rewriting switched on; other URLs are returned unchanged.
+     */
+    public static String withBatchRewriting(String url) {
+        if (!url.startsWith("jdbc:mysql:") || url.contains("rewriteBatchedStatements")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+    }
+
+    /**
+     * Imports every line of file into table. Rows already committed stay in the table if
+     * the import fails part way.
+     *
+     * @param skipHeader ignore the first line
+     */
+    public Result importFile(Path file, String table, String[] columns, boolean skipHeader)
+            throws IOException, SQLException {
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+
+        BlockingQueue<List<String[]>> chunks = new ArrayBlockingQueue<>(threads * 2);
+        AtomicLong rowsWritten = new AtomicLong();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread writer = new Thread(() -> writeChunks(sql, columns.length, chunks, rowsWritten, failure),
+                    "csv-import-writer-" + (i + 1));
+            writer.start();
+            writers.add(writer);
+        }
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String[]> chunk = new ArrayList<>(batchSize);
+            String line;
+            if (skipHeader && reader.readLine() != null) {
+                lineNumber++;
+            }
+            while ((line = reader.readLine()) != null && failure.get() == null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = parseLine(line);
+                if (fields.length != columns.length) {
+                    throw new IOException("Line " + lineNumber + " has " + fields.length + " fields, expected "
+                            + columns.length);
+                }
+                chunk.add(fields);
+                if (chunk.size() == batchSize) {
+                    // Waits while the writers are behind, which keeps memory constant
+                    if (!enqueue(chunks, chunk, failure)) {
+                        break;
+                    }
+                    chunk = new ArrayList<>(batchSize);
+                }
+
+                long now = System.nanoTime();
+                if (now - lastReport > PROGRESS_INTERVAL_NANOS) {
+                    lastReport = now;
+                    System.out.println("  " + new Result(rowsWritten.get(), now - start) + "...");
+                }
+            }
+            if (!chunk.isEmpty() && failure.get() == null) {
+                enqueue(chunks, chunk, failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            // One end marker per writer
+            for (int i = 0; i < threads; i++) {
+                offerEndMarker(chunks, failure);
+            }
+            for (Thread writer : writers) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        Exception e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof SQLException) {
+            throw (SQLException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e != null) {
+            throw new SQLException("Import interrupted", e);
+        }
+        return new Result(rowsWritten.get(), System.nanoTime() - start);
+    }
+
+    private void writeChunks(String sql, int columnCount, BlockingQueue<List<String[]>> chunks,
+                             AtomicLong rowsWritten, AtomicReference<Exception> failure) {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            PreparedStatement insert = connection.prepareStatement(sql);
+            while (true) {
+                List<String[]> chunk = chunks.take();
+                if (chunk == END_OF_INPUT || failure.get() != null) {
+                    break;
+                }
+                for (String[] fields : chunk) {
+                    for (int c = 0; c < columnCount; c++) {
+                        if (fields[c] == null) {
+                            insert.setNull(c + 1, Types.VARCHAR);
+                        } else {
+                            insert.setString(c + 1, fields[c]);
+                        }
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                connection.commit();
+                rowsWritten.addAndGet(chunk.size());
+            }
+            insert.close();
+        } catch (SQLException | InterruptedException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } catch (Error e) {
+            // Never let a writer die silently and take its chunk with it
+            failure.compareAndSet(null, new SQLException("Writer thread failed", e));
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a chunk, giving up if a writer has failed in the meantime.
+     */
+    private static boolean enqueue(BlockingQueue<List<String[]>> chunks, List<String[]> chunk,
+                                   AtomicReference<Exception> failure) throws InterruptedException {
+        while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void offerEndMarker(BlockingQueue<List<String[]>> chunks, AtomicReference<Exception> failure) {
+        try {
+            while (!chunks.offer(END_OF_INPUT, 100, TimeUnit.MILLISECONDS)) {
+                // After a failure the writers stop taking, so make room; otherwise keep waiting
+                if (failure.get() != null) {
+                    chunks.poll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Splits one CSV line. Empty unquoted fields become null.
+     */
+    static String[] parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (ch == ',') {
+                fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: CsvBulkImporter file.csv table column1,column2,... [--header]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        String table = args[1];
+        String[] columns = args[2].split(",");
+        boolean skipHeader = args.length > 3 && args[3].equals("--header");
+
+        String url = withBatchRewriting(System.getProperty("jdbc.url", "jdbc:mysql://localhost:3308/library"));
+        try (ConnectionPool pool = ConnectionPool.create(url, System.getProperty("jdbc.user", "root"),
+                System.getProperty("jdbc.password", ""))) {
+            Result result = create(pool).importFile(file, table, columns, skipHeader);
+            System.out.println("Imported " + result);
+        }
+    }
+}
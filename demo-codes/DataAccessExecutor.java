@@ -0,0 +1,267 @@
+import javax.swing.*;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work for a Swing UI on background threads and hands the results back
+ * on the Event Dispatch Thread.
+ *
+ * Each job is a SwingWorker running on a small private thread pool, so a slow query
+ * never freezes the UI. Two kinds of work are supported:
+ *
+ *   refresh(key, ...)  reloads that coalesce by key. While a reload for "books" is
+ *                      queued, more requests for "books" are merged into it; while one
+ *                      is running, they cause exactly one more run afterwards, so the
+ *                      table ends up showing the latest data without N redundant queries.
+ *   execute(...)       one-off writes; never merged and not cancelled by the user.
+ *
+ * Running reloads can be cancelled with cancelRefreshes(). Jobs should register their
+ * statements with Context.track() so a long query is cancelled in the database too, and
+ * call Context.checkCancelled() while reading rows.
+ *
+ * All methods must be called on the Event Dispatch Thread. Success and error callbacks
+ * run on the Event Dispatch Thread; they are skipped for cancelled jobs.
+ *
+ * The number of worker threads can be set with -Djdbc.worker.threads (default 4).
+ */
+public class DataAccessExecutor {
+
+    /**
+     * Database work to run in the background.
+     */
+    public interface Job<T> {
+        T run(Context context) throws Exception;
+    }
+
+    /**
+     * Notified on the Event Dispatch Thread whenever a job starts or finishes.
+     * description is the most recently started job still running, or null when idle.
+     */
+    public interface ActivityListener {
+        void activityChanged(int runningJobs, String description);
+    }
+
+    /**
+     * Lets a running job notice cancellation and cancel its statements.
+     */
+    public static final class Context {
+        private final List<Statement> statements = new ArrayList<>();
+        private volatile boolean cancelled;
+
+        /**
+         * Registers a statement so that cancelling the job also cancels the statement.
+         */
+        public synchronized <S extends Statement> S track(S statement) {
+            statements.add(statement);
+            if (cancelled) {
+                cancelQuietly(statement);
+            }
+            return statement;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Throws CancellationException if the job has been cancelled.
+         */
+        public void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            for (Statement statement : statements) {
+                cancelQuietly(statement);
+            }
+        }
+
+        private static void cancelQuietly(Statement statement) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                // Already finished or closed
+            }
+        }
+    }
+
+    private final ExecutorService threads;
+    private final Map<String, Task<?>> refreshes = new HashMap<>();
+    private final List<Task<?>> running = new ArrayList<>();
+    private ActivityListener activityListener;
+
+    public DataAccessExecutor(int threadCount) {
+        AtomicInteger counter = new AtomicInteger();
+        threads = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r, "data-access-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Creates an executor using the jdbc.worker.threads system property.
+     */
+    public static DataAccessExecutor create() {
+        return new DataAccessExecutor(Integer.getInteger("jdbc.worker.threads", 4));
+    }
+
+    public void setActivityListener(ActivityListener activityListener) {
+        this.activityListener = activityListener;
+    }
+
+    /**
+     * Reloads data in the background, coalescing with other reloads of the same key.
+     * When requests are merged, the callbacks of the latest request are used.
+     */
+    public <T> void refresh(String key, String description, Job<T> job,
+                            Consumer<? super T> onSuccess, Consumer<? super Exception> onError) {
+        @SuppressWarnings("unchecked")
+        Task<T> pending = (Task<T>) refreshes.get(key);
+        if (pending != null) {
+            pending.job = job;
+            pending.onSuccess = onSuccess;
+            pending.onError = onError;
+            if (pending.getState() != SwingWorker.StateValue.PENDING) {
+                // Already reading; its result may be stale, so run once more afterwards
+                pending.rerun = true;
+            }
+            return;
+        }
+
+        Task<T> task = new Task<>(key, description, job, onSuccess, onError);
+        refreshes.put(key, task);
+        start(task);
+    }
+
+    /**
+     * Runs a write in the background. Writes are never merged or cancelled by the user.
+     */
+    public <T> void execute(String description, Job<T> job,
+                            Consumer<? super T> onSuccess, Consumer<? super Exception> onError) {
+        start(new Task<>(null, description, job, onSuccess, onError));
+    }
+
+    /**
+     * Cancels all running and queued reloads. Their callbacks are not called.
+     */
+    public void cancelRefreshes() {
+        for (Task<?> task : new ArrayList<>(refreshes.values())) {
+            // Forget it now so a new request for the same key starts a fresh job
+            refreshes.remove(task.key);
+            task.rerun = false;
+            task.context.cancel();
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * True while a reload for key is queued or running.
+     */
+    public boolean isRefreshing(String key) {
+        return refreshes.containsKey(key);
+    }
+
+    /**
+     * Number of jobs queued or running.
+     */
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    public void shutdown() {
+        cancelRefreshes();
+        threads.shutdown();
+    }
+
+    private void start(Task<?> task) {
+        running.add(task);
+        fireActivityChanged();
+        threads.execute(task);
+    }
+
+    private void finished(Task<?> task) {
+        running.remove(task);
+        if (task.key != null && refreshes.get(task.key) == task) {
+            refreshes.remove(task.key);
+            if (task.rerun) {
+                rerun(task);
+            }
+        }
+        fireActivityChanged();
+    }
+
+    private <T> void rerun(Task<T> task) {
+        refresh(task.key, task.description, task.job, task.onSuccess, task.onError);
+    }
+
+    private void fireActivityChanged() {
+        if (activityListener != null) {
+            String description = running.isEmpty() ? null : running.get(running.size() - 1).description;
+            activityListener.activityChanged(running.size(), description);
+        }
+    }
+
+    private final class Task<T> extends SwingWorker<T, Void> {
+        final String key;
+        final String description;
+        final Context context = new Context();
+        // Replaced on the EDT when later requests are merged into this one
+        volatile Job<T> job;
+        Consumer<? super T> onSuccess;
+        Consumer<? super Exception> onError;
+        boolean rerun;
+
+        Task(String key, String description, Job<T> job,
+             Consumer<? super T> onSuccess, Consumer<? super Exception> onError) {
+            this.key = key;
+            this.description = description;
+            this.job = job;
+            this.onSuccess = onSuccess;
+            this.onError = onError;
+        }
+
+        @Override
+        protected T doInBackground() throws Exception {
+            return job.run(context);
+        }
+
+        @Override
+        protected void done() {
+            try {
+                if (isCancelled() || context.isCancelled()) {
+                    return;
+                }
+                T result;
+                try {
+                    result = get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (!(cause instanceof CancellationException)) {
+                        onError.accept(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+                    }
+                    return;
+                } catch (InterruptedException e) {
+                    // Cannot happen: done() runs after the job has completed
+                    return;
+                }
+                onSuccess.accept(result);
+            } finally {
+                finished(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-through cache of one table's rows by integer primary key, kept current by the code
+ * that writes them.
+ *
+ * get() answers from memory and reads the row on a miss. After a successful insert or
+ * update, refresh() reads just that row again; after a delete, remove() forgets it. Callers
+ * pass the returned row to the table model instead of reloading the table.
+ *
+ * Writes that touch many known rows, like unlinking a publisher from all its books, read
+ * them back together with refresh(connection, ids). Changes that come from other programs
+ * are found with fetchChanged(). It reads only the rows whose
+ * updated_at column is at or after the last one seen (the watermark). The table needs an
+ * updated_at column that the database sets on insert and update. The query looks back
+ * OVERLAP_MILLIS before the watermark, to catch transactions that committed late with
+ * an earlier timestamp; rows seen twice are simply applied twice. Deletes leave no
+ * updated_at behind, so other programs' deletes still need a reload.
+ *
+ * Rows are Object[] in column order, the first column being the key. The cache keeps the
+ * maxSize most recently used rows. Safe to use from several threads.
+ */
+public class EntityCache {
+
+    public static final long OVERLAP_MILLIS = 1000;
+
+    private final String label;
+    private final int columnCount;
+    private final String select;
+    private final String keyColumn;
+    private final String selectByIdSql;
+    private final String changedSinceSql;
+    private final String maxUpdatedSql;
+
+    private final Map<Integer, Object[]> rows;
+    private Timestamp watermark;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param columns the columns to cache, starting with the integer primary key
+     */
+    public EntityCache(String table, String[] columns, final int maxSize) {
+        this.label = table;
+        this.columnCount = columns.length;
+        this.select = "SELECT " + String.join(", ", columns) + " FROM " + table;
+        this.keyColumn = columns[0];
+        this.selectByIdSql = select + " WHERE " + columns[0] + " = ?";
+        this.changedSinceSql = "SELECT " + String.join(", ", columns) + ", updated_at FROM " + table
+                + " WHERE updated_at >= ? ORDER BY updated_at";
+        this.maxUpdatedSql = "SELECT MAX(updated_at) FROM " + table;
+
+        // Access order makes this an LRU
+        this.rows = new LinkedHashMap<Integer, Object[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * The row with the given key, read from the database if it is not cached; null if there
+     * is no such row.
+     */
+    public Object[] get(Connection connection, int id) throws SQLException {
+        synchronized (this) {
+            Object[] row = rows.get(id);
+            if (row != null) {
+                hits++;
+                return row;
+            }
+            misses++;
+        }
+        return refresh(connection, id);
+    }
+
+    /**
+     * Reads the row again, e.g. right after writing it, and caches it. Returns null and
+     * forgets the row if it no longer exists.
+     */
+    public Object[] refresh(Connection connection, int id) throws SQLException {
+        Object[] row = null;
+        try (PreparedStatement pstmt = connection.prepareStatement(selectByIdSql)) {
+            pstmt.setInt(1, id);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                row = readRow(rs);
+            }
+            rs.close();
+        }
+        synchronized (this) {
+            if (row != null) {
+                rows.put(id, row);
+            } else {
+                rows.remove(id);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Reads the rows with the given keys again and caches them, in IN lists of up to
+     * UnitOfWork.IN_LIST_SIZE keys. Rows that no longer exist are forgotten.
+     *
+     * @return the rows that still exist, in no particular order
+     */
+    public List<Object[]> refresh(Connection connection, int[] ids) throws SQLException {
+        List<Object[]> found = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += UnitOfWork.IN_LIST_SIZE) {
+            int to = Math.min(ids.length, from + UnitOfWork.IN_LIST_SIZE);
+            StringBuilder sql = new StringBuilder(select).append(" WHERE ").append(keyColumn).append(" IN (?");
+            for (int i = from + 1; i < to; i++) {
+                sql.append(", ?");
+            }
+            sql.append(')');
+            try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
+                for (int i = from; i < to; i++) {
+                    pstmt.setInt(i - from + 1, ids[i]);
+                }
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    found.add(readRow(rs));
+                }
+                rs.close();
+            }
+        }
+
+        synchronized (this) {
+            for (int id : ids) {
+                rows.remove(id);
+            }
+            for (Object[] row : found) {
+                rows.put(((Number) row[0]).intValue(), row);
+            }
+        }
+        return found;
+    }
+
+    public synchronized void remove(int id) {
+        rows.remove(id);
+    }
+
+    /**
+     * Starts watching for changes from now on: the watermark becomes the newest updated_at
+     * in the table. Call once, after the initial load of whatever shows the rows.
+     */
+    public void startWatermark(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(maxUpdatedSql);
+            Timestamp newest = rs.next() ? rs.getTimestamp(1) : null;
+            rs.close();
+            synchronized (this) {
+                watermark = newest != null ? newest : new Timestamp(0);
+            }
+        }
+    }
+
+    /**
+     * Reads the rows inserted or updated since the watermark, refreshes them in the cache
+     * and moves the watermark forward.
+     *
+     * @return the changed rows, oldest change first
+     */
+    public List<Object[]> fetchChanged(Connection connection) throws SQLException {
+        Timestamp since;
+        synchronized (this) {
+            if (watermark == null) {
+                throw new IllegalStateException("startWatermark() was not called for " + label);
+            }
+            since = new Timestamp(watermark.getTime() - OVERLAP_MILLIS);
+        }
+
+        List<Object[]> changed = new ArrayList<>();
+        Timestamp newest = null;
+        try (PreparedStatement pstmt = connection.prepareStatement(changedSinceSql)) {
+            pstmt.setTimestamp(1, since);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                changed.add(readRow(rs));
+                newest = rs.getTimestamp(columnCount + 1);
+            }
+            rs.close();
+        }
+
+        synchronized (this) {
+            for (Object[] row : changed) {
+                rows.put(((Number) row[0]).intValue(), row);
+            }
+            if (newest != null && newest.after(watermark)) {
+                watermark = newest;
+            }
+        }
+        return changed;
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    public synchronized String getStats() {
+        long lookups = hits + misses;
+        return String.format("%s cache[size=%d, hits=%d, misses=%d, hitRate=%.1f%%, watermark=%s]", label,
+                rows.size(), hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, watermark);
+    }
+
+    private Object[] readRow(ResultSet rs) throws SQLException {
+        Object[] row = new Object[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            row[c] = rs.getObject(c + 1);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,210 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Measures the join, lookup and delete paths of the library and students schemas before
+ * and after the index migrations.
+ *
+ * The tables are created at schema version 1 (primary keys and constraints only) and
+ * seeded with rowCount books, book-author links and students, rowCount / 10 authors and
+ * 1000 publishers. Each query then runs 20 times with random keys, and the median latency
+ * is reported. The migrations to the latest version are applied next (the time taken to
+ * build the indexes is shown), and the queries run again. Deletes and updates are rolled
+ * back, so both rounds see the same data.
+ *
+ * The tables live in a ScratchDatabase, which must be empty and is emptied again at the end.
+ *
+ * Usage: java -Djdbc.url=... IndexBenchmark [rowCount]   (default 1000000)
+ */
+public class IndexBenchmark {
+
+    private static final int PUBLISHERS = 1000;
+    private static final int RUNS = 20;
+
+    private static final String[] QUERIES = {
+            "Books of an author (join)",
+            "SELECT b.book_id, b.title FROM BooksAuthors ba JOIN Books b ON b.book_id = ba.book_id WHERE ba.author_id = ?",
+            "Authors by last name",
+            "SELECT author_id, first_name FROM Authors WHERE last_name = ?",
+            "Books of a publisher",
+            "SELECT COUNT(*) FROM Books WHERE publisher_id = ?",
+            "Students by name",
+            "SELECT id, email FROM students WHERE name = ?",
+    };
+
+    private static final String[] WRITES = {
+            "Delete author (links + row)",
+            "DELETE FROM BooksAuthors WHERE author_id = ?;DELETE FROM Authors WHERE author_id = ?",
+            "Delete publisher (unlink books)",
+            "UPDATE Books SET publisher_id = NULL WHERE publisher_id = ?",
+    };
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int authors = Math.max(1, rows / 10);
+
+        try (ScratchDatabase db = ScratchDatabase.open()) {
+            if (db == null) {
+                return;
+            }
+            ConnectionPool pool = db.getPool();
+            try (Connection connection = pool.getConnection()) {
+                LibraryManagementSystem.SCHEMA.migrate(connection, 1);
+                JDBCDemo.SCHEMA.migrate(connection, 1);
+            }
+
+            long start = System.nanoTime();
+            seed(db, rows, authors);
+            System.out.printf("Seeded %d books, links and students, %d authors in %.1f s%n", rows, authors,
+                    (System.nanoTime() - start) / 1e9);
+
+            double[] before = measureAll(pool, rows, authors);
+            try (Connection connection = pool.getConnection()) {
+                LibraryManagementSystem.SCHEMA.migrate(connection);
+                JDBCDemo.SCHEMA.migrate(connection);
+            }
+            double[] after = measureAll(pool, rows, authors);
+
+            System.out.printf("%n%-34s %14s %14s %9s%n", "Median latency", "Before (ms)", "After (ms)", "Speedup");
+            String[] names = {QUERIES[0], QUERIES[2], QUERIES[4], QUERIES[6], WRITES[0], WRITES[2]};
+            for (int i = 0; i < names.length; i++) {
+                System.out.printf("%-34s %14.3f %14.3f %8.0fx%n", names[i], before[i], after[i],
+                        before[i] / Math.max(after[i], 0.001));
+            }
+        }
+    }
+
+    private static void seed(ScratchDatabase db, int rows, int authors) throws SQLException {
+        insert(db, "INSERT INTO Publishers (publisher_id, name, address) VALUES (?, ?, ?)", PUBLISHERS,
+                (pstmt, i) -> {
+                    pstmt.setInt(1, i);
+                    pstmt.setString(2, "Publisher " + i);
+                    pstmt.setString(3, i + " Main Street");
+                });
+        // Every last name is shared by about five authors
+        insert(db, "INSERT INTO Authors (author_id, first_name, last_name) VALUES (?, ?, ?)", authors,
+                (pstmt, i) -> {
+                    pstmt.setInt(1, i);
+                    pstmt.setString(2, "First" + i);
+                    pstmt.setString(3, "Last" + (i % Math.max(1, authors / 5)));
+                });
+        insert(db, "INSERT INTO Books (book_id, title, isbn, publication_year, publisher_id) VALUES (?, ?, ?, ?, ?)",
+                rows, (pstmt, i) -> {
+                    pstmt.setInt(1, i);
+                    pstmt.setString(2, "Title " + i);
+                    pstmt.setString(3, "ISBN-" + i);
+                    pstmt.setInt(4, 1900 + i % 125);
+                    pstmt.setInt(5, 1 + i % PUBLISHERS);
+                });
+        insert(db, "INSERT INTO BooksAuthors (id, book_id, author_id) VALUES (?, ?, ?)", rows,
+                (pstmt, i) -> {
+                    pstmt.setInt(1, i);
+                    pstmt.setInt(2, i);
+                    pstmt.setInt(3, 1 + i % authors);
+                });
+        insert(db, "INSERT INTO students (id, name, email, gpa) VALUES (?, ?, ?, ?)", rows,
+                (pstmt, i) -> {
+                    pstmt.setInt(1, i);
+                    pstmt.setString(2, "Student " + i);
+                    pstmt.setString(3, "student" + i + "@example.com");
+                    pstmt.setDouble(4, (i % 400) / 100.0);
+                });
+    }
+
+    private interface RowBinder {
+        void bind(PreparedStatement pstmt, int i) throws SQLException;
+    }
+
+    private static void insert(ScratchDatabase db, String sql, int count, RowBinder binder) throws SQLException {
+        db.inChunks(count, 100_000, (connection, from, to) -> {
+            PreparedStatement pstmt = connection.prepareStatement(sql);
+            for (int i = from; i <= to; i++) {
+                binder.bind(pstmt, i);
+                pstmt.addBatch();
+                if (i % 5_000 == 0) {
+                    pstmt.executeBatch();
+                    connection.commit();
+                }
+            }
+            pstmt.executeBatch();
+            connection.commit();
+            pstmt.close();
+        });
+    }
+
+    /**
+     * Median latency in ms of each query, then each write.
+     */
+    private static double[] measureAll(ConnectionPool pool, int rows, int authors) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            return measureAll(connection, rows, authors);
+        }
+    }
+
+    private static double[] measureAll(Connection connection, int rows, int authors) throws SQLException {
+        Random random = new Random(42);
+        double[] medians = new double[QUERIES.length / 2 + WRITES.length / 2];
+        int m = 0;
+
+        for (int q = 0; q < QUERIES.length; q += 2) {
+            double[] millis = new double[RUNS];
+            try (PreparedStatement pstmt = connection.prepareStatement(QUERIES[q + 1])) {
+                for (int run = 0; run < RUNS; run++) {
+                    bindKey(pstmt, q, random, rows, authors);
+                    long start = System.nanoTime();
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        // Read every row, as the application would
+                    }
+                    rs.close();
+                    millis[run] = (System.nanoTime() - start) / 1e6;
+                }
+            }
+            medians[m++] = ScratchDatabase.median(millis);
+        }
+
+        connection.setAutoCommit(false);
+        try {
+            for (int w = 0; w < WRITES.length; w += 2) {
+                double[] millis = new double[RUNS];
+                String[] statements = WRITES[w + 1].split(";");
+                for (int run = 0; run < RUNS; run++) {
+                    int key = w == 0 ? 1 + random.nextInt(authors) : 1 + random.nextInt(PUBLISHERS);
+                    long start = System.nanoTime();
+                    for (String sql : statements) {
+                        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                            pstmt.setInt(1, key);
+                            pstmt.executeUpdate();
+                        }
+                    }
+                    millis[run] = (System.nanoTime() - start) / 1e6;
+                    connection.rollback();
+                }
+                medians[m++] = ScratchDatabase.median(millis);
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        return medians;
+    }
+
+    private static void bindKey(PreparedStatement pstmt, int query, Random random, int rows, int authors)
+            throws SQLException {
+        switch (query) {
+            case 0:
+                pstmt.setInt(1, 1 + random.nextInt(authors));
+                break;
+            case 2:
+                pstmt.setString(1, "Last" + random.nextInt(Math.max(1, authors / 5)));
+                break;
+            case 4:
+                pstmt.setInt(1, 1 + random.nextInt(PUBLISHERS));
+                break;
+            default:
+                pstmt.setString(1, "Student " + (1 + random.nextInt(rows)));
+        }
+    }
+}
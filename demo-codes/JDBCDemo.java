@@ -1,11 +1,15 @@
 
 // File: JDBCDemo.java
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -13,13 +17,29 @@ import java.util.Scanner;
  * This example uses MySQL database
  */
 public class JDBCDemo {
-  // Database connection parameters
-  private static final String DB_URL = "jdbc:mysql://localhost:3308/students_db";
-  private static final String USER = "root";
-  private static final String PASS = ""; // Change this to your MySQL password
-
-  // Connection object
-  private static Connection connection = null;
+  // Database connection parameters (override with -Djdbc.url=..., e.g. an embedded H2 database for tests)
+  private static final String DB_URL = System.getProperty("jdbc.url", "jdbc:mysql://localhost:3308/students_db");
+  private static final String USER = System.getProperty("jdbc.user", "root");
+  private static final String PASS = System.getProperty("jdbc.password", ""); // Change this to your MySQL password
+
+  // Students schema; append new migrations at the end and never edit one that has shipped
+  static final SchemaMigrator SCHEMA = new SchemaMigrator("students",
+      new SchemaMigrator.Migration(1, "Create students table",
+          "CREATE TABLE IF NOT EXISTS students (" +
+              "id INT AUTO_INCREMENT PRIMARY KEY," +
+              "name VARCHAR(100) NOT NULL," +
+              "email VARCHAR(100) UNIQUE," +
+              "gpa DECIMAL(3,2)" +
+              ")"),
+      new SchemaMigrator.Migration(2, "Index student names",
+          "CREATE INDEX idx_students_name ON students (name)"));
+
+  // Connection pool; every operation borrows a connection and returns it when done
+  private static ConnectionPool pool = null;
+
+  // Trigram index over students.name, so name searches don't scan the table; null until built
+  private static TrigramIndex nameIndex = null;
+  private static final String NAME_INDEX_SQL = "SELECT id, name FROM students";
 
   public static void main(String[] args) {
     try {
@@ -38,15 +58,14 @@ public class JDBCDemo {
       System.out.println("Database error occurred:");
       e.printStackTrace();
     } finally {
-      // Always close the connection
-      try {
-        if (connection != null) {
-          connection.close();
-          System.out.println("Database connection closed.");
+      // Always close the pool's connections
+      if (pool != null) {
+        System.out.println(pool.getStats());
+        if (pool.getMetrics() != null) {
+          System.out.print(pool.getMetrics().report());
         }
-      } catch (SQLException e) {
-        System.out.println("Error closing connection:");
-        e.printStackTrace();
+        pool.close();
+        System.out.println("Database connections closed.");
       }
     }
   }
@@ -56,65 +75,106 @@ public class JDBCDemo {
    */
   private static void connectToDatabase() throws SQLException {
     // Register JDBC driver (optional for newer JDBC drivers)
-    try {
-      Class.forName("com.mysql.cj.jdbc.Driver");
-      System.out.println("MySQL JDBC Driver registered.");
-    } catch (ClassNotFoundException e) {
-      System.out.println("MySQL JDBC Driver not found. Include it in your library path!");
-      throw new SQLException("JDBC Driver not found", e);
+    if (isMySql()) {
+      try {
+        Class.forName("com.mysql.cj.jdbc.Driver");
+        System.out.println("MySQL JDBC Driver registered.");
+      } catch (ClassNotFoundException e) {
+        System.out.println("MySQL JDBC Driver not found. Include it in your library path!");
+        throw new SQLException("JDBC Driver not found", e);
+      }
     }
 
-    // Open a connection
-    connection = DriverManager.getConnection(DB_URL, USER, PASS);
-    System.out.println("Successfully connected to MySQL database!");
+    // Open the connection pool
+    pool = ConnectionPool.create(DB_URL, USER, PASS);
+    System.out.println("Successfully connected to database: " + DB_URL);
+  }
+
+  private static boolean isMySql() {
+    return DB_URL.startsWith("jdbc:mysql:");
   }
 
   /**
    * Set up the database and tables for the demo
    */
   private static void setupDatabase() throws SQLException {
-    Statement stmt = connection.createStatement();
-
-    // Create students_db database if it doesn't exist
-    // Note: We're already connected to students_db, but this ensures it exists
-    stmt.execute("CREATE DATABASE IF NOT EXISTS students_db");
-    stmt.execute("USE students_db");
-
-    // Create students table
-    String createTableSQL = "CREATE TABLE IF NOT EXISTS students (" +
-        "id INT AUTO_INCREMENT PRIMARY KEY," +
-        "name VARCHAR(100) NOT NULL," +
-        "email VARCHAR(100) UNIQUE," +
-        "gpa DECIMAL(3,2)" +
-        ")";
-    stmt.execute(createTableSQL);
-
-    // Add some sample data if the table is empty
-    ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM students");
-    rs.next();
-    int count = rs.getInt(1);
-
-    if (count == 0) {
-      String[] sampleNames = { "John Smith", "Maria Garcia", "Wei Chen", "Priya Patel", "Mohammed Ali" };
-      String[] sampleEmails = { "john@example.com", "maria@example.com", "wei@example.com",
-          "priya@example.com", "mohammed@example.com" };
-      double[] sampleGpas = { 3.5, 4.0, 3.2, 3.9, 3.7 };
-
-      String insertSQL = "INSERT INTO students (name, email, gpa) VALUES (?, ?, ?)";
-      PreparedStatement pstmt = connection.prepareStatement(insertSQL);
-
-      for (int i = 0; i < sampleNames.length; i++) {
-        pstmt.setString(1, sampleNames[i]);
-        pstmt.setString(2, sampleEmails[i]);
-        pstmt.setDouble(3, sampleGpas[i]);
-        pstmt.executeUpdate();
+    try (Connection connection = pool.getConnection()) {
+      Statement stmt = connection.createStatement();
+
+      // Create students_db database if it doesn't exist
+      // Note: We're already connected to students_db, but this ensures it exists
+      if (isMySql()) {
+        stmt.execute("CREATE DATABASE IF NOT EXISTS students_db");
+        stmt.execute("USE students_db");
       }
 
-      System.out.println("Sample data added to students table.");
-      pstmt.close();
+      // Create the students table, or bring it up to the latest schema version
+      SCHEMA.migrate(connection);
+
+      // Add some sample data if the table is empty
+      ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM students");
+      rs.next();
+      int count = rs.getInt(1);
+
+      if (count == 0) {
+        String[] sampleNames = { "John Smith", "Maria Garcia", "Wei Chen", "Priya Patel", "Mohammed Ali" };
+        String[] sampleEmails = { "john@example.com", "maria@example.com", "wei@example.com",
+            "priya@example.com", "mohammed@example.com" };
+        double[] sampleGpas = { 3.5, 4.0, 3.2, 3.9, 3.7 };
+
+        String insertSQL = "INSERT INTO students (name, email, gpa) VALUES (?, ?, ?)";
+        PreparedStatement pstmt = connection.prepareStatement(insertSQL);
+
+        // Send all sample rows as one batch in one transaction
+        connection.setAutoCommit(false);
+        for (int i = 0; i < sampleNames.length; i++) {
+          pstmt.setString(1, sampleNames[i]);
+          pstmt.setString(2, sampleEmails[i]);
+          pstmt.setDouble(3, sampleGpas[i]);
+          pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+        connection.commit();
+
+        System.out.println("Sample data added to students table.");
+        pstmt.close();
+      }
+
+      stmt.close();
     }
 
-    stmt.close();
+    buildNameIndex();
+  }
+
+  /**
+   * Load every student name into the search index. If that fails, searches fall back to LIKE.
+   */
+  private static void buildNameIndex() {
+    long start = System.nanoTime();
+    try (Connection connection = pool.getConnection()) {
+      nameIndex = TrigramIndex.load(connection, NAME_INDEX_SQL);
+      System.out.printf("Indexed %d student names in %.1f ms.\n", nameIndex.size(), (System.nanoTime() - start) / 1e6);
+    } catch (SQLException e) {
+      nameIndex = null;
+      System.out.println("Could not build the name index, searches will query the database: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Compare the name index with the table and repair any differences
+   */
+  private static void checkNameIndex() {
+    if (nameIndex == null) {
+      buildNameIndex();
+      return;
+    }
+    try (Connection connection = pool.getConnection()) {
+      int fixed = nameIndex.reconcile(connection, NAME_INDEX_SQL);
+      System.out.println(fixed == 0 ? "Name index is consistent with the database."
+          : "Name index repaired: " + fixed + " entries were out of date.");
+    } catch (SQLException e) {
+      System.out.println("Could not check the name index: " + e.getMessage());
+    }
   }
 
   /**
@@ -132,6 +192,9 @@ public class JDBCDemo {
       System.out.println("4. Update student GPA");
       System.out.println("5. Delete a student");
       System.out.println("6. Execute custom SQL query");
+      System.out.println("7. Bulk import students from CSV");
+      System.out.println("8. Export a query to CSV/NDJSON file");
+      System.out.println("9. Check the name search index");
       System.out.println("0. Exit");
       System.out.print("Enter your choice: ");
 
@@ -160,6 +223,15 @@ public class JDBCDemo {
         case 6:
           executeCustomQuery(scanner);
           break;
+        case 7:
+          bulkImportStudents(scanner);
+          break;
+        case 8:
+          exportQuery(scanner);
+          break;
+        case 9:
+          checkNameIndex();
+          break;
         default:
           System.out.println("Invalid choice. Please try again.");
       }
@@ -172,24 +244,26 @@ public class JDBCDemo {
    * Display all students in the database
    */
   private static void viewAllStudents() throws SQLException {
-    Statement stmt = connection.createStatement();
-    ResultSet rs = stmt.executeQuery("SELECT * FROM students ORDER BY id");
+    try (Connection connection = pool.getConnection()) {
+      Statement stmt = connection.createStatement();
+      ResultSet rs = stmt.executeQuery("SELECT * FROM students ORDER BY id");
 
-    System.out.println("\n----- All Students -----");
-    System.out.printf("%-5s %-20s %-25s %-5s\n", "ID", "Name", "Email", "GPA");
-    System.out.println("----------------------------------------------------------");
+      System.out.println("\n----- All Students -----");
+      System.out.printf("%-5s %-20s %-25s %-5s\n", "ID", "Name", "Email", "GPA");
+      System.out.println("----------------------------------------------------------");
 
-    while (rs.next()) {
-      int id = rs.getInt("id");
-      String name = rs.getString("name");
-      String email = rs.getString("email");
-      double gpa = rs.getDouble("gpa");
+      while (rs.next()) {
+        int id = rs.getInt("id");
+        String name = rs.getString("name");
+        String email = rs.getString("email");
+        double gpa = rs.getDouble("gpa");
 
-      System.out.printf("%-5d %-20s %-25s %.2f\n", id, name, email, gpa);
-    }
+        System.out.printf("%-5d %-20s %-25s %.2f\n", id, name, email, gpa);
+      }
 
-    rs.close();
-    stmt.close();
+      rs.close();
+      stmt.close();
+    }
   }
 
   /**
@@ -208,17 +282,25 @@ public class JDBCDemo {
     double gpa = scanner.nextDouble();
     scanner.nextLine(); // Consume newline
 
-    // Use prepared statement to prevent SQL injection
-    String sql = "INSERT INTO students (name, email, gpa) VALUES (?, ?, ?)";
-    PreparedStatement pstmt = connection.prepareStatement(sql);
-    pstmt.setString(1, name);
-    pstmt.setString(2, email);
-    pstmt.setDouble(3, gpa);
-
-    int rowsAffected = pstmt.executeUpdate();
-    System.out.println(rowsAffected + " student added successfully.");
-
-    pstmt.close();
+    try (Connection connection = pool.getConnection()) {
+      // Use prepared statement to prevent SQL injection
+      String sql = "INSERT INTO students (name, email, gpa) VALUES (?, ?, ?)";
+      PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+      pstmt.setString(1, name);
+      pstmt.setString(2, email);
+      pstmt.setDouble(3, gpa);
+
+      int rowsAffected = pstmt.executeUpdate();
+      System.out.println(rowsAffected + " student added successfully.");
+
+      // Make the new student searchable
+      ResultSet keys = pstmt.getGeneratedKeys();
+      if (keys.next() && nameIndex != null) {
+        nameIndex.put(keys.getInt(1), name);
+      }
+      keys.close();
+      pstmt.close();
+    }
   }
 
   /**
@@ -230,18 +312,66 @@ public class JDBCDemo {
     System.out.print("Enter student name to search (partial names OK): ");
     String searchName = scanner.nextLine();
 
-    String sql = "SELECT * FROM students WHERE name LIKE ?";
-    PreparedStatement pstmt = connection.prepareStatement(sql);
-    pstmt.setString(1, "%" + searchName + "%");
+    try (Connection connection = pool.getConnection()) {
+      if (nameIndex != null) {
+        // Find the matching IDs in memory, then fetch those rows by primary key
+        long start = System.nanoTime();
+        int[] ids = nameIndex.search(searchName);
+        System.out.printf("Index lookup: %d matches in %.3f ms\n", ids.length, (System.nanoTime() - start) / 1e6);
+        if (ids.length == 0) {
+          System.out.println("No students found with that name.");
+          return;
+        }
+        printStudentsById(connection, ids);
+        return;
+      }
+
+      // No index: a LIKE with a leading wildcard scans the whole table
+      PreparedStatement pstmt = connection.prepareStatement("SELECT * FROM students WHERE name LIKE ? ORDER BY id");
+      pstmt.setString(1, "%" + searchName + "%");
+      ResultSet rs = pstmt.executeQuery();
 
-    ResultSet rs = pstmt.executeQuery();
+      System.out.printf("%-5s %-20s %-25s %-5s\n", "ID", "Name", "Email", "GPA");
+      System.out.println("----------------------------------------------------------");
+      if (printStudents(rs) == 0) {
+        System.out.println("No students found with that name.");
+      }
 
+      rs.close();
+      pstmt.close();
+    }
+  }
+
+  /**
+   * Print the students with the given IDs, querying them in batches of up to 500
+   */
+  private static void printStudentsById(Connection connection, int[] ids) throws SQLException {
     System.out.printf("%-5s %-20s %-25s %-5s\n", "ID", "Name", "Email", "GPA");
     System.out.println("----------------------------------------------------------");
 
-    boolean found = false;
+    for (int from = 0; from < ids.length; from += 500) {
+      int[] batch = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + 500));
+      StringBuilder sql = new StringBuilder("SELECT * FROM students WHERE id IN (?");
+      for (int i = 1; i < batch.length; i++) {
+        sql.append(", ?");
+      }
+      sql.append(") ORDER BY id");
+
+      PreparedStatement pstmt = connection.prepareStatement(sql.toString());
+      for (int i = 0; i < batch.length; i++) {
+        pstmt.setInt(i + 1, batch[i]);
+      }
+      ResultSet rs = pstmt.executeQuery();
+      printStudents(rs);
+      rs.close();
+      pstmt.close();
+    }
+  }
+
+  private static int printStudents(ResultSet rs) throws SQLException {
+    int count = 0;
     while (rs.next()) {
-      found = true;
+      count++;
       int id = rs.getInt("id");
       String name = rs.getString("name");
       String email = rs.getString("email");
@@ -249,13 +379,7 @@ public class JDBCDemo {
 
       System.out.printf("%-5d %-20s %-25s %.2f\n", id, name, email, gpa);
     }
-
-    if (!found) {
-      System.out.println("No students found with that name.");
-    }
-
-    rs.close();
-    pstmt.close();
+    return count;
   }
 
   /**
@@ -269,34 +393,30 @@ public class JDBCDemo {
     scanner.nextLine(); // Consume newline
 
     // First check if student exists
-    String checkSql = "SELECT name FROM students WHERE id = ?";
-    PreparedStatement checkStmt = connection.prepareStatement(checkSql);
-    checkStmt.setInt(1, id);
-    ResultSet rs = checkStmt.executeQuery();
+    String name = findStudentName(id);
 
-    if (rs.next()) {
-      String name = rs.getString("name");
+    if (name != null) {
       System.out.println("Updating GPA for student: " + name);
 
       System.out.print("Enter new GPA: ");
       double newGpa = scanner.nextDouble();
       scanner.nextLine(); // Consume newline
 
-      String updateSql = "UPDATE students SET gpa = ? WHERE id = ?";
-      PreparedStatement updateStmt = connection.prepareStatement(updateSql);
-      updateStmt.setDouble(1, newGpa);
-      updateStmt.setInt(2, id);
+      // Borrow a connection only after the user has answered
+      try (Connection connection = pool.getConnection()) {
+        String updateSql = "UPDATE students SET gpa = ? WHERE id = ?";
+        PreparedStatement updateStmt = connection.prepareStatement(updateSql);
+        updateStmt.setDouble(1, newGpa);
+        updateStmt.setInt(2, id);
 
-      int rowsAffected = updateStmt.executeUpdate();
-      System.out.println(rowsAffected + " student record updated.");
+        int rowsAffected = updateStmt.executeUpdate();
+        System.out.println(rowsAffected + " student record updated.");
 
-      updateStmt.close();
+        updateStmt.close();
+      }
     } else {
       System.out.println("No student found with ID: " + id);
     }
-
-    rs.close();
-    checkStmt.close();
   }
 
   /**
@@ -310,34 +430,52 @@ public class JDBCDemo {
     scanner.nextLine(); // Consume newline
 
     // First check if student exists
-    String checkSql = "SELECT name FROM students WHERE id = ?";
-    PreparedStatement checkStmt = connection.prepareStatement(checkSql);
-    checkStmt.setInt(1, id);
-    ResultSet rs = checkStmt.executeQuery();
+    String name = findStudentName(id);
 
-    if (rs.next()) {
-      String name = rs.getString("name");
+    if (name != null) {
       System.out.println("Are you sure you want to delete student: " + name + "? (y/n)");
       String confirm = scanner.nextLine();
 
       if (confirm.equalsIgnoreCase("y")) {
-        String deleteSql = "DELETE FROM students WHERE id = ?";
-        PreparedStatement deleteStmt = connection.prepareStatement(deleteSql);
-        deleteStmt.setInt(1, id);
-
-        int rowsAffected = deleteStmt.executeUpdate();
-        System.out.println(rowsAffected + " student deleted successfully.");
+        // Borrow a connection only after the user has confirmed
+        try (Connection connection = pool.getConnection()) {
+          String deleteSql = "DELETE FROM students WHERE id = ?";
+          PreparedStatement deleteStmt = connection.prepareStatement(deleteSql);
+          deleteStmt.setInt(1, id);
+
+          int rowsAffected = deleteStmt.executeUpdate();
+          System.out.println(rowsAffected + " student deleted successfully.");
+          if (nameIndex != null) {
+            nameIndex.remove(id);
+          }
 
-        deleteStmt.close();
+          deleteStmt.close();
+        }
       } else {
         System.out.println("Delete operation cancelled.");
       }
     } else {
       System.out.println("No student found with ID: " + id);
     }
+  }
 
-    rs.close();
-    checkStmt.close();
+  /**
+   * Look up a student's name by ID, or null if there is no such student.
+   * The connection is returned before the caller prompts the user again.
+   */
+  private static String findStudentName(int id) throws SQLException {
+    try (Connection connection = pool.getConnection()) {
+      String checkSql = "SELECT name FROM students WHERE id = ?";
+      PreparedStatement checkStmt = connection.prepareStatement(checkSql);
+      checkStmt.setInt(1, id);
+      ResultSet rs = checkStmt.executeQuery();
+
+      String name = rs.next() ? rs.getString("name") : null;
+
+      rs.close();
+      checkStmt.close();
+      return name;
+    }
   }
 
   /**
@@ -349,7 +487,7 @@ public class JDBCDemo {
     System.out.print("Enter SQL query: ");
     String sql = scanner.nextLine();
 
-    try {
+    try (Connection connection = pool.getConnection()) {
       Statement stmt = connection.createStatement();
 
       // Check if it's a SELECT query
@@ -384,6 +522,85 @@ public class JDBCDemo {
       stmt.close();
     } catch (SQLException e) {
       System.out.println("Error executing SQL: " + e.getMessage());
+      return;
+    }
+
+    // Arbitrary SQL may have changed student names behind the index's back
+    if (!sql.trim().toLowerCase().startsWith("select")) {
+      checkNameIndex();
+    }
+  }
+
+  /**
+   * Bulk import students from a CSV file of name,email,gpa lines
+   */
+  private static void bulkImportStudents(Scanner scanner) throws SQLException {
+    System.out.println("\n----- Bulk Import Students -----");
+    System.out.print("Enter CSV file path (name,email,gpa per line): ");
+    Path file = readPath(scanner);
+    if (file == null) {
+      return;
+    }
+    System.out.print("Does the file have a header line? (y/n): ");
+    boolean skipHeader = scanner.nextLine().trim().equalsIgnoreCase("y");
+
+    // A separate pool for the writer threads, with MySQL batch rewriting switched on
+    try (ConnectionPool importPool = ConnectionPool.create(CsvBulkImporter.withBatchRewriting(DB_URL), USER, PASS)) {
+      CsvBulkImporter.Result result = CsvBulkImporter.create(importPool)
+          .importFile(file, "students", new String[] { "name", "email", "gpa" }, skipHeader);
+      System.out.println("Imported " + result);
+    } catch (IOException e) {
+      System.out.println("Error reading CSV file: " + e.getMessage());
+    } catch (SQLException e) {
+      System.out.println("Error importing students: " + e.getMessage());
+    } catch (RuntimeException e) {
+      // e.g. a worker thread's failure, rethrown by the importer
+      System.out.println("Error importing students: " + e);
+    }
+
+    // Index whatever was committed, including the part of a failed import
+    checkNameIndex();
+  }
+
+  /**
+   * Stream the result of a SELECT query to a CSV or NDJSON file
+   */
+  private static void exportQuery(Scanner scanner) throws SQLException {
+    System.out.println("\n----- Export Query Results -----");
+    System.out.print("Enter SELECT query (blank for all students): ");
+    String sql = scanner.nextLine().trim();
+    if (sql.isEmpty()) {
+      sql = "SELECT * FROM students ORDER BY id";
+    }
+    System.out.print("Enter output file (.csv, or .json/.ndjson for NDJSON): ");
+    Path file = readPath(scanner);
+    if (file == null) {
+      return;
+    }
+
+    try (Connection connection = pool.getConnection()) {
+      ResultExporter.Result result = ResultExporter.forUrl(DB_URL)
+          .export(connection, sql, file, ResultExporter.Format.forFile(file));
+      System.out.println("Exported " + result + " to " + file);
+    } catch (IOException e) {
+      System.out.println("Error writing file: " + e.getMessage());
+    } catch (SQLException e) {
+      System.out.println("Error executing SQL: " + e.getMessage());
+    } catch (RuntimeException e) {
+      System.out.println("Error exporting results: " + e);
+    }
+  }
+
+  /**
+   * Read a file path, or print why it is invalid and return null
+   */
+  private static Path readPath(Scanner scanner) {
+    String path = scanner.nextLine().trim();
+    try {
+      return Paths.get(path);
+    } catch (InvalidPathException e) {
+      System.out.println("Invalid file path: " + e.getMessage());
+      return null;
     }
   }
-}
\ No newline at end of file
+}
@@ -1,5 +1,4 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -9,8 +8,8 @@ public class JDBCSwingDemo extends JFrame {
     private JTextField txtName, txtAge, txtId;
     private JButton btnConnect, btnInsert, btnUpdate, btnDelete, btnView;
     private JTable tblData;
-    private DefaultTableModel tableModel;
-    private Connection connection;
+    private ColumnarTableModel tableModel;
+    private ConnectionPool pool;
     private JLabel statusLabel;
 
     public JDBCSwingDemo() {
@@ -56,10 +55,8 @@ public class JDBCSwingDemo extends JFrame {
         controlPanel.add(buttonPanel, BorderLayout.CENTER);
 
         // Table for displaying data
-        tableModel = new DefaultTableModel(
-                new Object[][]{},
-                new String[]{"ID", "Name", "Age"}
-        );
+        // Rows are kept in column arrays, not one boxed Object[] per row
+        tableModel = new ColumnarTableModel("ID", "Name", "Age");
         tblData = new JTable(tableModel);
         JScrollPane scrollPane = new JScrollPane(tblData);
         scrollPane.setPreferredSize(new Dimension(650, 200));
@@ -122,16 +119,22 @@ public class JDBCSwingDemo extends JFrame {
 
     private void connectToDatabase() {
         try {
-            // Load the JDBC driver
-            Class.forName("com.mysql.cj.jdbc.Driver");
-
             // Database URL, username, and password
-            // Replace these with your actual database info
-            String url = "jdbc:mysql://localhost:3308/demo_db";
-            String username = "root";
-            String password = "";
+            // Replace these with your actual database info, or pass -Djdbc.url=... and friends
+            String url = System.getProperty("jdbc.url", "jdbc:mysql://localhost:3308/demo_db");
+            String username = System.getProperty("jdbc.user", "root");
+            String password = System.getProperty("jdbc.password", "");
+
+            // Load the JDBC driver
+            if (url.startsWith("jdbc:mysql:")) {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            }
 
-            connection = DriverManager.getConnection(url, username, password);
+            // Each button borrows a pooled connection instead of sharing one
+            if (pool != null) {
+                pool.close();
+            }
+            pool = ConnectionPool.create(url, username, password);
 
             // Create table if it doesn't exist
             createTable();
@@ -147,7 +150,7 @@ public class JDBCSwingDemo extends JFrame {
     }
 
     private void createTable() {
-        try {
+        try (Connection connection = pool.getConnection()) {
             Statement stmt = connection.createStatement();
             String sql = "CREATE TABLE IF NOT EXISTS users " +
                     "(id INT PRIMARY KEY, " +
@@ -167,14 +170,17 @@ public class JDBCSwingDemo extends JFrame {
                 String name = txtName.getText();
                 int age = Integer.parseInt(txtAge.getText());
 
-                String sql = "INSERT INTO users (id, name, age) VALUES (?, ?, ?)";
-                PreparedStatement pstmt = connection.prepareStatement(sql);
-                pstmt.setInt(1, id);
-                pstmt.setString(2, name);
-                pstmt.setInt(3, age);
+                int rowsAffected;
+                try (Connection connection = pool.getConnection()) {
+                    String sql = "INSERT INTO users (id, name, age) VALUES (?, ?, ?)";
+                    PreparedStatement pstmt = connection.prepareStatement(sql);
+                    pstmt.setInt(1, id);
+                    pstmt.setString(2, name);
+                    pstmt.setInt(3, age);
 
-                int rowsAffected = pstmt.executeUpdate();
-                pstmt.close();
+                    rowsAffected = pstmt.executeUpdate();
+                    pstmt.close();
+                }
 
                 if (rowsAffected > 0) {
                     statusLabel.setText("Record inserted successfully");
@@ -194,14 +200,17 @@ public class JDBCSwingDemo extends JFrame {
                 String name = txtName.getText();
                 int age = Integer.parseInt(txtAge.getText());
 
-                String sql = "UPDATE users SET name = ?, age = ? WHERE id = ?";
-                PreparedStatement pstmt = connection.prepareStatement(sql);
-                pstmt.setString(1, name);
-                pstmt.setInt(2, age);
-                pstmt.setInt(3, id);
+                int rowsAffected;
+                try (Connection connection = pool.getConnection()) {
+                    String sql = "UPDATE users SET name = ?, age = ? WHERE id = ?";
+                    PreparedStatement pstmt = connection.prepareStatement(sql);
+                    pstmt.setString(1, name);
+                    pstmt.setInt(2, age);
+                    pstmt.setInt(3, id);
 
-                int rowsAffected = pstmt.executeUpdate();
-                pstmt.close();
+                    rowsAffected = pstmt.executeUpdate();
+                    pstmt.close();
+                }
 
                 if (rowsAffected > 0) {
                     statusLabel.setText("Record updated successfully");
@@ -225,12 +234,15 @@ public class JDBCSwingDemo extends JFrame {
             }
 
             int id = Integer.parseInt(idText);
-            String sql = "DELETE FROM users WHERE id = ?";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
-            pstmt.setInt(1, id);
+            int rowsAffected;
+            try (Connection connection = pool.getConnection()) {
+                String sql = "DELETE FROM users WHERE id = ?";
+                PreparedStatement pstmt = connection.prepareStatement(sql);
+                pstmt.setInt(1, id);
 
-            int rowsAffected = pstmt.executeUpdate();
-            pstmt.close();
+                rowsAffected = pstmt.executeUpdate();
+                pstmt.close();
+            }
 
             if (rowsAffected > 0) {
                 statusLabel.setText("Record deleted successfully");
@@ -246,25 +258,19 @@ public class JDBCSwingDemo extends JFrame {
 
     private void viewAllRecords() {
         try {
-            // Clear the table
-            tableModel.setRowCount(0);
-
-            String sql = "SELECT * FROM users";
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+            try (Connection connection = pool.getConnection()) {
+                String sql = "SELECT id, name, age FROM users";
+                Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery(sql);
 
-            // Add data to table
-            while (rs.next()) {
-                int id = rs.getInt("id");
-                String name = rs.getString("name");
-                int age = rs.getInt("age");
+                // Copy the result straight into the table's column arrays
+                ColumnarRows rows = ColumnarRows.read(rs, 64, new StringPool(10_000), null);
+                tableModel.setRows(rows);
 
-                tableModel.addRow(new Object[]{id, name, age});
+                rs.close();
+                stmt.close();
             }
 
-            rs.close();
-            stmt.close();
-
             if (tableModel.getRowCount() == 0) {
                 statusLabel.setText("No records found in database");
             } else {
@@ -0,0 +1,691 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing per SQL statement for the connections of a ConnectionPool, to find out which
+ * statements are slow without a profiler or access to the database server.
+ *
+ * wrap() puts a proxy around a physical connection that hands out instrumented statements
+ * and result sets. Every execution is counted under the statement's fingerprint: its SQL
+ * with whitespace collapsed, literals replaced by ? and lists of ? collapsed, so
+ * "WHERE id IN (1, 2, 3)" and "WHERE id IN (?, ?)" both count as "WHERE id IN (?...)".
+ * For each fingerprint it keeps
+ *
+ *   - executions and errors
+ *   - a LatencyHistogram of the time spent in execute, executeQuery, executeUpdate or
+ *     executeBatch
+ *   - a LatencyHistogram of the time spent in ResultSet.next(), from the first call until
+ *     the result set is exhausted or closed
+ *   - the rows returned or updated, and how many batches were run and how large they were
+ *
+ * A statement whose execute and fetch time together exceed the slow query threshold is
+ * added to a bounded log that keeps the most recent entries. The log holds the fingerprint
+ * and the number of bind parameters, never their values, so it cannot leak what users
+ * typed.
+ *
+ * The metrics are registered as an MBean (see JdbcMetricsMBean) and can also be printed to
+ * System.err at a fixed interval. Against an in-memory H2 database the proxies add about
+ * 1 us per execution and 0.15 us per row read, most of it for timing each next(); next to
+ * a network round trip that is noise. Set jdbc.metrics.enabled=false to leave them out.
+ *
+ * Settings can be given as system properties:
+ *   jdbc.metrics.enabled           instrument the pool's connections (default true)
+ *   jdbc.metrics.slowQueryMillis   slow query threshold, execute plus fetch (default 500)
+ *   jdbc.metrics.slowQueryLogSize  slow queries kept (default 100)
+ *   jdbc.metrics.maxStatements     fingerprints tracked; later ones are counted together
+ *                                  as "(other)" (default 200, about 60 KB each)
+ *   jdbc.metrics.dumpSeconds       print report() this often, 0 = off (default 0)
+ *   jdbc.metrics.jmx               register the MBean (default true)
+ */
+public class JdbcMetrics implements JdbcMetricsMBean, AutoCloseable {
+
+    private static final String OTHER = "(other)";
+    private static final int REPORT_STATEMENTS = 20;
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    /**
+     * The counters of one statement fingerprint.
+     */
+    public static final class StatementStats {
+        private final String fingerprint;
+        private final AtomicLong executions = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong batchedRows = new AtomicLong();
+        private final LatencyHistogram executeTime = new LatencyHistogram();
+        private final LatencyHistogram fetchTime = new LatencyHistogram();
+
+        private StatementStats(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getExecutions() {
+            return executions.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /**
+         * Rows read from result sets plus update counts.
+         */
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getBatches() {
+            return batches.get();
+        }
+
+        public long getBatchedRows() {
+            return batchedRows.get();
+        }
+
+        public LatencyHistogram getExecuteTime() {
+            return executeTime;
+        }
+
+        public LatencyHistogram getFetchTime() {
+            return fetchTime;
+        }
+
+        /**
+         * Execute plus fetch time of all executions.
+         */
+        public double getTotalNanos() {
+            return executeTime.getMeanNanos() * executeTime.getCount()
+                    + fetchTime.getMeanNanos() * fetchTime.getCount();
+        }
+
+        @Override
+        public String toString() {
+            long n = executions.get();
+            long batchCount = batches.get();
+            return String.format("%8d %6d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f %9.1f %7s  %s", n, errors.get(),
+                    getTotalNanos() / 1e6, executeTime.getPercentileNanos(50) / 1e6,
+                    executeTime.getPercentileNanos(99) / 1e6, executeTime.getMaxNanos() / 1e6,
+                    fetchTime.getPercentileNanos(50) / 1e6, fetchTime.getPercentileNanos(99) / 1e6,
+                    n == 0 ? 0 : (double) rows.get() / n,
+                    batchCount == 0 ? "-" : String.format("%.0f", (double) batchedRows.get() / batchCount),
+                    fingerprint);
+        }
+    }
+
+    private static final String HEADER = String.format("%8s %6s %10s %9s %9s %9s %9s %9s %9s %7s  %s", "Calls",
+            "Errors", "Total ms", "Exec p50", "Exec p99", "Exec max", "Fetch p50", "Fetch p99", "Rows/call",
+            "Batch", "SQL");
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final int maxStatements;
+    private volatile long slowQueryNanos;
+    private final int slowQueryLogSize;
+    private final Deque<String> slowQueries = new ArrayDeque<>();
+    private final AtomicLong slowQueryCount = new AtomicLong();
+    private final long dumpMillis;
+    private long nextDump;
+    private final ObjectName name;
+
+    /**
+     * @param poolName         identifies the pool in JMX, e.g. its URL; null for no JMX
+     *                         registration
+     * @param slowQueryMillis  log statements slower than this
+     * @param dumpMillis       interval for dumpIfDue(), 0 = never
+     */
+    public JdbcMetrics(String poolName, long slowQueryMillis, int slowQueryLogSize, int maxStatements,
+                       long dumpMillis) {
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        this.slowQueryLogSize = slowQueryLogSize;
+        this.maxStatements = maxStatements;
+        this.dumpMillis = dumpMillis;
+        this.nextDump = System.currentTimeMillis() + dumpMillis;
+        this.name = poolName == null ? null : register(poolName);
+    }
+
+    /**
+     * Creates the metrics for a pool using the jdbc.metrics.* system properties, or returns
+     * null if they are disabled.
+     */
+    public static JdbcMetrics create(String url) {
+        if (!Boolean.parseBoolean(System.getProperty("jdbc.metrics.enabled", "true"))) {
+            return null;
+        }
+        boolean jmx = Boolean.parseBoolean(System.getProperty("jdbc.metrics.jmx", "true"));
+        return new JdbcMetrics(jmx ? url : null,
+                Long.getLong("jdbc.metrics.slowQueryMillis", 500L),
+                Integer.getInteger("jdbc.metrics.slowQueryLogSize", 100),
+                Integer.getInteger("jdbc.metrics.maxStatements", 200),
+                TimeUnit.SECONDS.toMillis(Long.getLong("jdbc.metrics.dumpSeconds", 0L)));
+    }
+
+    /**
+     * Returns a connection that records every statement run on it here. Closing it closes
+     * the physical connection.
+     */
+    public Connection wrap(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(physical));
+    }
+
+    /**
+     * The counters of fingerprint, created on first use. Once maxStatements fingerprints
+     * are tracked, new ones share a single "(other)" entry.
+     */
+    public StatementStats getStats(String fingerprint) {
+        StatementStats stats = statements.get(fingerprint);
+        if (stats != null) {
+            return stats;
+        }
+        if (statements.size() >= maxStatements) {
+            fingerprint = OTHER;
+        }
+        return statements.computeIfAbsent(fingerprint, StatementStats::new);
+    }
+
+    /**
+     * Every statement fingerprint with its counters, the most total time first.
+     */
+    public List<StatementStats> getStatementStats() {
+        List<StatementStats> list = new ArrayList<>(statements.values());
+        list.sort((a, b) -> Double.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return list;
+    }
+
+    @Override
+    public long getExecutionCount() {
+        long count = 0;
+        for (StatementStats stats : statements.values()) {
+            count += stats.executions.get();
+        }
+        return count;
+    }
+
+    @Override
+    public long getErrorCount() {
+        long count = 0;
+        for (StatementStats stats : statements.values()) {
+            count += stats.errors.get();
+        }
+        return count;
+    }
+
+    @Override
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueryCount.get();
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long millis) {
+        slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public String[] getStatements() {
+        List<StatementStats> list = getStatementStats();
+        String[] lines = new String[list.size() + 1];
+        lines[0] = HEADER;
+        for (int i = 0; i < list.size(); i++) {
+            lines[i + 1] = list.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public synchronized String[] getSlowQueries() {
+        return slowQueries.toArray(new String[0]);
+    }
+
+    @Override
+    public String report() {
+        List<StatementStats> list = getStatementStats();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("JDBC statements: %d executions, %d errors, %d fingerprints%n",
+                getExecutionCount(), getErrorCount(), list.size()));
+        report.append(HEADER).append(System.lineSeparator());
+        for (int i = 0; i < list.size() && i < REPORT_STATEMENTS; i++) {
+            report.append(list.get(i)).append(System.lineSeparator());
+        }
+        if (list.size() > REPORT_STATEMENTS) {
+            report.append(String.format("... %d more%n", list.size() - REPORT_STATEMENTS));
+        }
+        String[] slow = getSlowQueries();
+        report.append(String.format("Slow statements over %d ms: %d%n", getSlowQueryThresholdMillis(),
+                getSlowQueryCount()));
+        for (String entry : slow) {
+            report.append("  ").append(entry).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+        synchronized (this) {
+            slowQueries.clear();
+        }
+        slowQueryCount.set(0);
+    }
+
+    /**
+     * Prints report() to System.err if the dump interval has passed since the last time.
+     * ConnectionPool calls this from its housekeeping thread.
+     */
+    public void dumpIfDue() {
+        long now = System.currentTimeMillis();
+        if (dumpMillis <= 0 || now < nextDump) {
+            return;
+        }
+        nextDump = now + dumpMillis;
+        System.err.print(report());
+    }
+
+    /**
+     * Unregisters the MBean.
+     */
+    @Override
+    public void close() {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                // Already gone
+            }
+        }
+    }
+
+    /**
+     * sql with runs of whitespace reduced to one space, string and number literals
+     * replaced by ?, and comma-separated lists of ? reduced to ?..., so that statements
+     * differing only in their values or the length of an IN list look the same.
+     * Double-quoted text is replaced too, since MySQL treats it as a string literal by
+     * default; identifiers quoted that way are lost as well, which only merges fingerprints.
+     */
+    public static String fingerprint(String sql) {
+        int n = sql.length();
+        StringBuilder out = new StringBuilder(n);
+        boolean space = false;
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && out.length() > 0) {
+                out.append(' ');
+            }
+            space = false;
+
+            if (c == '\'' || c == '"') {
+                // Skip to the closing quote; a doubled or backslash-escaped quote is inside the literal
+                i++;
+                while (i < n) {
+                    char d = sql.charAt(i);
+                    if (d == '\\') {
+                        i += 2;
+                    } else if (d == c && i + 1 < n && sql.charAt(i + 1) == c) {
+                        i += 2;
+                    } else if (d == c) {
+                        break;
+                    } else {
+                        i++;
+                    }
+                }
+                appendPlaceholder(out);
+            } else if (Character.isDigit(c) && !endsWithWordChar(out)) {
+                while (i + 1 < n && (Character.isLetterOrDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+                    i++;
+                }
+                appendPlaceholder(out);
+            } else if (c == '?') {
+                appendPlaceholder(out);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean endsWithWordChar(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_';
+    }
+
+    private static void appendPlaceholder(StringBuilder out) {
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end > 0 && out.charAt(end - 1) == ',') {
+            end--;
+            // "?, ?" becomes "?...", and "?..., ?" stays "?..."
+            if (end >= 4 && out.substring(end - 4, end).equals("?...")) {
+                out.setLength(end);
+                return;
+            }
+            if (end > 0 && out.charAt(end - 1) == '?') {
+                out.setLength(end);
+                out.append("...");
+                return;
+            }
+        }
+        out.append('?');
+    }
+
+    private ObjectName register(String poolName) {
+        // Leave out URL parameters, which may include a password
+        String url = poolName.split("[?;]", 2)[0];
+        try {
+            ObjectName objectName = new ObjectName("jdbc:type=StatementMetrics,id=" + instances.incrementAndGet()
+                    + ",url=" + ObjectName.quote(url));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            System.err.println("Could not register JDBC metrics with JMX: " + e);
+            return null;
+        }
+    }
+
+    private void finished(StatementStats stats, long executeNanos, long fetchNanos, long rows, int parameters) {
+        long total = executeNanos + fetchNanos;
+        if (total < slowQueryNanos) {
+            return;
+        }
+        slowQueryCount.incrementAndGet();
+        String entry = String.format("%s %s %.3f ms (execute %.3f, fetch %.3f), %d rows, %d parameters: %s",
+                new SimpleDateFormat("HH:mm:ss.SSS").format(new Date()), Thread.currentThread().getName(),
+                total / 1e6, executeNanos / 1e6, fetchNanos / 1e6, rows, parameters, stats.fingerprint);
+        synchronized (this) {
+            slowQueries.addLast(entry);
+            while (slowQueries.size() > slowQueryLogSize) {
+                slowQueries.removeFirst();
+            }
+        }
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object identity(Object proxy, Object target, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return target.toString();
+        }
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        return method.getDeclaringClass() == Object.class;
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isObjectMethod(method)) {
+                return identity(proxy, target, method, args);
+            }
+            Object result = forward(target, method, args);
+            switch (method.getName()) {
+                case "createStatement":
+                    return instrument(method, result, null);
+                case "prepareStatement":
+                case "prepareCall":
+                    return instrument(method, result, fingerprint((String) args[0]));
+                default:
+                    return result;
+            }
+        }
+
+        private Object instrument(Method method, Object statement, String fingerprint) {
+            // Statement, PreparedStatement or CallableStatement
+            Class<?> type = method.getReturnType();
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler((Statement) statement, fingerprint));
+        }
+    }
+
+    /**
+     * Times the executions of one statement. Like the statement itself, it is used by one
+     * thread at a time.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        // null for a plain Statement, whose SQL comes with each execution
+        private final String fingerprint;
+        private int parameters;
+        private int batchSize;
+        private String batchFingerprint;
+        // The result set of the last execution, handed out again by getResultSet()
+        private ResultSet resultSet;
+        private ResultSet resultSetProxy;
+
+        StatementHandler(Statement target, String fingerprint) {
+            this.target = target;
+            this.fingerprint = fingerprint;
+            this.batchFingerprint = fingerprint;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isObjectMethod(method)) {
+                return identity(proxy, target, method, args);
+            }
+            String methodName = method.getName();
+            switch (methodName) {
+                case "execute":
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    return execute(method, args);
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return executeBatch(method, args);
+                case "addBatch":
+                    if (args != null && batchFingerprint == null) {
+                        // A plain Statement batch is counted under its first statement
+                        batchFingerprint = fingerprint((String) args[0]);
+                    }
+                    batchSize++;
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    batchFingerprint = fingerprint;
+                    break;
+                case "clearParameters":
+                    parameters = 0;
+                    break;
+                case "getResultSet": {
+                    ResultSet rs = (ResultSet) forward(target, method, args);
+                    return rs == resultSet ? resultSetProxy : rs;
+                }
+                default:
+                    // setString(3, ...) and friends
+                    if (args != null && args.length >= 2 && args[0] instanceof Integer
+                            && methodName.startsWith("set")) {
+                        parameters = Math.max(parameters, (Integer) args[0]);
+                    }
+                    break;
+            }
+            return forward(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            StatementStats stats = getStats(args != null ? fingerprint((String) args[0]) : fingerprint);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = forward(target, method, args);
+            } catch (Throwable e) {
+                stats.errors.incrementAndGet();
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            stats.executions.incrementAndGet();
+            stats.executeTime.record(elapsed);
+
+            ResultSet rs = null;
+            if (result instanceof ResultSet) {
+                rs = (ResultSet) result;
+            } else if (Boolean.TRUE.equals(result)) {
+                rs = target.getResultSet();
+            }
+            if (rs != null) {
+                resultSet = rs;
+                resultSetProxy = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class}, new ResultSetHandler(rs, stats, elapsed, parameters));
+                return result instanceof ResultSet ? resultSetProxy : result;
+            }
+            long updated = result instanceof Number ? ((Number) result).longValue() : target.getUpdateCount();
+            stats.rows.addAndGet(Math.max(0, updated));
+            finished(stats, elapsed, 0, updated, parameters);
+            return result;
+        }
+
+        private Object executeBatch(Method method, Object[] args) throws Throwable {
+            StatementStats stats = getStats(batchFingerprint != null ? batchFingerprint : OTHER);
+            int size = batchSize;
+            batchSize = 0;
+            batchFingerprint = fingerprint;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = forward(target, method, args);
+            } catch (Throwable e) {
+                stats.errors.incrementAndGet();
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            stats.executions.incrementAndGet();
+            stats.executeTime.record(elapsed);
+            stats.batches.incrementAndGet();
+            stats.batchedRows.addAndGet(size);
+            long updated = updatedRows(result);
+            stats.rows.addAndGet(updated);
+            finished(stats, elapsed, 0, updated, parameters);
+            return result;
+        }
+    }
+
+    // Sum of the update counts returned by executeBatch() or executeLargeBatch();
+    // SUCCESS_NO_INFO (-2) and EXECUTE_FAILED (-3) count nothing
+    private static long updatedRows(Object counts) {
+        long sum = 0;
+        if (counts instanceof int[]) {
+            for (int count : (int[]) counts) {
+                sum += Math.max(0, count);
+            }
+        } else if (counts instanceof long[]) {
+            for (long count : (long[]) counts) {
+                sum += Math.max(0, count);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Times next() and counts the rows, then records them when the result set is
+     * exhausted or closed, whichever comes first.
+     */
+    private final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final StatementStats stats;
+        private final long executeNanos;
+        private final int parameters;
+        private long fetchNanos;
+        private long rows;
+        private boolean done;
+
+        ResultSetHandler(ResultSet target, StatementStats stats, long executeNanos, int parameters) {
+            this.target = target;
+            this.stats = stats;
+            this.executeNanos = executeNanos;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    long start = System.nanoTime();
+                    Object more = forward(target, method, args);
+                    fetchNanos += System.nanoTime() - start;
+                    if ((Boolean) more) {
+                        rows++;
+                    } else {
+                        done();
+                    }
+                    return more;
+                }
+                case "close":
+                    done();
+                    break;
+                default:
+                    if (isObjectMethod(method)) {
+                        return identity(proxy, target, method, args);
+                    }
+                    break;
+            }
+            return forward(target, method, args);
+        }
+
+        private void done() {
+            if (done) {
+                return;
+            }
+            done = true;
+            stats.fetchTime.record(fetchNanos);
+            stats.rows.addAndGet(rows);
+            finished(stats, executeNanos, fetchNanos, rows, parameters);
+        }
+    }
+}
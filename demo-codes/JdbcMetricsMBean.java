@@ -0,0 +1,48 @@
+/**
+ * Management interface of JdbcMetrics, shown in JConsole or VisualVM under
+ * jdbc:type=StatementMetrics.
+ */
+public interface JdbcMetricsMBean {
+
+    /**
+     * Statements executed, including batches, since the start or the last reset().
+     */
+    long getExecutionCount();
+
+    long getErrorCount();
+
+    /**
+     * Number of distinct statement fingerprints seen.
+     */
+    int getStatementCount();
+
+    /**
+     * Statements that took longer than the slow query threshold, including those no
+     * longer in the log.
+     */
+    long getSlowQueryCount();
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long millis);
+
+    /**
+     * One line per statement fingerprint, the most total time first.
+     */
+    String[] getStatements();
+
+    /**
+     * The slow query log, oldest first.
+     */
+    String[] getSlowQueries();
+
+    /**
+     * The statement table and the slow query log as text, as in the periodic dump.
+     */
+    String report();
+
+    /**
+     * Forgets every statement and the slow query log.
+     */
+    void reset();
+}
@@ -0,0 +1,460 @@
+import javax.swing.table.AbstractTableModel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Table model that shows a whole database table without loading it into memory.
+ *
+ * Rows are fetched a page at a time, in the background, when the JTable asks for them,
+ * i.e. when they scroll into view. Pages are read with keyset pagination:
+ *
+ *   SELECT ... FROM table WHERE key > ? ORDER BY key LIMIT ?
+ *
+ * where "key" is the last key of the previous page, so reading page 5000 costs the same
+ * as reading page 1. When the user jumps to a page whose predecessor was never read, the
+ * model starts from the closest page it does know and skips the difference with OFFSET.
+ *
+ * After each page that was actually displayed, the next page is prefetched. Only the
+ * most recently used pages are kept; older ones are dropped and read again if needed.
+ * Rows that are not loaded yet show as empty cells. Pages are stored as ColumnarRows, with
+ * one StringPool per model so repeated names are kept once.
+ *
+ * After a single-row change, call rowInserted(), rowUpdated() or rowDeleted() with the
+ * committed row instead of reload(). They patch the loaded pages in place and fire a
+ * one-row event. A deleted row shifts the rows after it, so the pages after it are read
+ * again when shown. A change the model cannot place, e.g. an insert in the middle of
+ * the key order, falls back to reload().
+ *
+ * keysOf() returns the keys of any rows, loaded or not, e.g. to delete a selection of
+ * thousands of rows, without pushing the visible pages out of the cache.
+ *
+ * The first column must be the table's integer primary key.
+ *
+ * Page size and the number of cached pages can be set with -Djdbc.table.pageSize
+ * (default 200) and -Djdbc.table.maxPages (default 25).
+ *
+ * Like any Swing model, it must only be used on the Event Dispatch Thread.
+ */
+public class KeysetTableModel extends AbstractTableModel {
+
+    private final DataAccessExecutor dataAccess;
+    private final Supplier<ConnectionPool> pool;
+    private final String label;
+    private final String[] columnNames;
+    private final int pageSize;
+    private final Consumer<? super Exception> errorHandler;
+
+    private final String countSql;
+    private final String pageSql;
+    private final String pageWithOffsetSql;
+    private final String keysSql;
+
+    private final Map<Integer, ColumnarRows> pages;
+    private final StringPool strings;
+    // afterKey[p] is the largest key before page p; only valid where knownPages is set
+    private long[] afterKey = new long[0];
+    private final BitSet knownPages = new BitSet();
+    private final BitSet failedPages = new BitSet();
+    private int rowCount;
+    private int generation;
+
+    public KeysetTableModel(DataAccessExecutor dataAccess, Supplier<ConnectionPool> pool, String table,
+                            String[] dbColumns, String[] columnNames, Consumer<? super Exception> errorHandler) {
+        this(dataAccess, pool, table, dbColumns, columnNames, errorHandler,
+                Integer.getInteger("jdbc.table.pageSize", 200), Integer.getInteger("jdbc.table.maxPages", 25));
+    }
+
+    public KeysetTableModel(DataAccessExecutor dataAccess, Supplier<ConnectionPool> pool, String table,
+                            String[] dbColumns, String[] columnNames, Consumer<? super Exception> errorHandler,
+                            int pageSize, final int maxPages) {
+        if (dbColumns.length != columnNames.length) {
+            throw new IllegalArgumentException("Need one column name per database column");
+        }
+        if (pageSize < 1 || maxPages < 2) {
+            throw new IllegalArgumentException("Invalid page size " + pageSize + " or page count " + maxPages);
+        }
+        this.dataAccess = dataAccess;
+        this.pool = pool;
+        this.label = table.toLowerCase();
+        this.columnNames = columnNames.clone();
+        this.pageSize = pageSize;
+        this.errorHandler = errorHandler;
+
+        String key = dbColumns[0];
+        String select = "SELECT " + String.join(", ", dbColumns) + " FROM " + table + " WHERE " + key + " > ? ORDER BY " + key;
+        this.countSql = "SELECT COUNT(*) FROM " + table;
+        this.pageSql = select + " LIMIT ?";
+        this.pageWithOffsetSql = select + " LIMIT ? OFFSET ?";
+        this.keysSql = "SELECT " + key + " FROM " + table + " WHERE " + key + " > ? ORDER BY " + key + " LIMIT ? OFFSET ?";
+
+        // Room for every string cell of the cached pages; older strings are dropped after that
+        this.strings = new StringPool(pageSize * maxPages * dbColumns.length);
+
+        // Access order makes this an LRU of pages
+        this.pages = new LinkedHashMap<Integer, ColumnarRows>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ColumnarRows> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Throws away all loaded rows and counts the table again.
+     */
+    public void reload() {
+        int reloadGeneration = ++generation;
+        pages.clear();
+        failedPages.clear();
+        // Keep showing the old row count until the new one arrives; page bounds must be found again
+        knownPages.clear();
+        if (afterKey.length > 0) {
+            knownPages.set(0);
+        }
+        fireTableDataChanged();
+
+        dataAccess.refresh(label + "#count", "Counting " + label, context -> {
+            try (Connection connection = pool.get().getConnection()) {
+                Statement stmt = context.track(connection.createStatement());
+                ResultSet rs = stmt.executeQuery(countSql);
+                rs.next();
+                int count = rs.getInt(1);
+                rs.close();
+                stmt.close();
+                return count;
+            }
+        }, count -> {
+            if (reloadGeneration != generation) {
+                return;
+            }
+            rowCount = count;
+            // Page bounds found while counting are still valid
+            afterKey = Arrays.copyOf(afterKey, pageCount());
+            knownPages.clear(afterKey.length, Math.max(afterKey.length, knownPages.length()));
+            if (afterKey.length > 0) {
+                afterKey[0] = Long.MIN_VALUE;
+                knownPages.set(0);
+            }
+            fireTableDataChanged();
+        }, errorHandler);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / pageSize;
+        ColumnarRows rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page, false);
+            return null;
+        }
+        int index = row % pageSize;
+        // A page can come back short if rows were deleted since the count
+        return index < rows.getRowCount() ? rows.getValue(index, column) : null;
+    }
+
+    /**
+     * Shows a new row, given as values for the database columns in order. A row whose key
+     * is above every other key, such as a new AUTO_INCREMENT row, is appended to the
+     * loaded last page; anything else reloads the model.
+     */
+    public void rowInserted(Object[] values) {
+        int key = ((Number) values[0]).intValue();
+        int lastPage = pageCount() - 1;
+        ColumnarRows last = lastPage >= 0 ? pages.get(lastPage) : null;
+        int lastPageRows = rowCount - lastPage * pageSize;
+        if (last == null || last.getRowCount() != lastPageRows || key <= last.getInt(lastPageRows - 1, 0)
+                || countInProgress()) {
+            reload();
+            return;
+        }
+
+        if (lastPageRows < pageSize) {
+            pages.put(lastPage, last.withRow(lastPageRows, values, strings));
+        } else {
+            // The last page is full, so the row starts a new one
+            afterKey = Arrays.copyOf(afterKey, lastPage + 2);
+            afterKey[lastPage + 1] = last.getInt(lastPageRows - 1, 0);
+            knownPages.set(lastPage + 1);
+            pages.put(lastPage + 1, last.withoutRows().withRow(0, values, strings));
+        }
+        rowCount++;
+        fireTableRowsInserted(rowCount - 1, rowCount - 1);
+    }
+
+    /**
+     * Shows the new values of a row if it is loaded. A row that is not loaded is read fresh
+     * when it scrolls into view, so nothing needs to be done for it.
+     */
+    public void rowUpdated(Object[] values) {
+        int key = ((Number) values[0]).intValue();
+        for (Map.Entry<Integer, ColumnarRows> entry : pages.entrySet()) {
+            ColumnarRows rows = entry.getValue();
+            int index = indexOf(rows, key);
+            if (index >= 0) {
+                entry.setValue(rows.withRow(index, values, strings));
+                int row = entry.getKey() * pageSize + index;
+                fireTableRowsUpdated(row, row);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the row with the given key. If it is not loaded, its position is unknown and
+     * the model reloads.
+     */
+    public void rowDeleted(int key) {
+        int page = -1;
+        int index = -1;
+        for (Map.Entry<Integer, ColumnarRows> entry : pages.entrySet()) {
+            index = indexOf(entry.getValue(), key);
+            if (index >= 0) {
+                page = entry.getKey();
+                break;
+            }
+        }
+        if (page < 0 || countInProgress()) {
+            reload();
+            return;
+        }
+
+        ColumnarRows rows = pages.get(page);
+        rowCount--;
+        // Everything after the row moves up by one, so later pages and their start keys are
+        // stale; this page's own start key is still right, so it is read again by keyset
+        int oldPageCount = afterKey.length;
+        afterKey = Arrays.copyOf(afterKey, pageCount());
+        knownPages.clear(page + 1, Math.max(page + 1, oldPageCount));
+        failedPages.clear(page, Math.max(page, oldPageCount));
+        for (int p = page + 1; p < oldPageCount; p++) {
+            pages.remove(p);
+        }
+        if (page == oldPageCount - 1 && rows.getRowCount() > 1) {
+            // The last page just gets shorter
+            pages.put(page, rows.withoutRow(index));
+        } else {
+            pages.remove(page);
+        }
+        // Loads still running for the old page layout must not be stored
+        generation++;
+
+        int row = page * pageSize + index;
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Selected rows start until end (exclusive, indexes into the sorted rows) that are not
+     * loaded, read as LIMIT count OFFSET offset after the key after. Gaps of up to a page
+     * of unselected rows are read along with them.
+     */
+    private static final class KeyRun {
+        final int start;
+        final int end;
+        final int count;
+        final long after;
+        final int offset;
+
+        KeyRun(int start, int end, int count, long after, int offset) {
+            this.start = start;
+            this.end = end;
+            this.count = count;
+            this.after = after;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Returns a job that finds the keys of rows, in ascending row order. Keys of loaded rows
+     * are taken from memory now; the job reads the others with one keyset query per run of
+     * nearby rows, starting from the closest known page bound, and does not store
+     * them as pages. Run it with the DataAccessExecutor. Rows deleted in the meantime are
+     * left out of the result.
+     */
+    public DataAccessExecutor.Job<int[]> keysOf(int[] rows) {
+        int[] sorted = rows.clone();
+        Arrays.sort(sorted);
+        int[] keys = new int[sorted.length];
+        List<KeyRun> runs = new ArrayList<>();
+        int i = 0;
+        while (i < sorted.length) {
+            int key = loadedKey(sorted[i]);
+            if (key >= 0) {
+                keys[i++] = key;
+                continue;
+            }
+            int start = i;
+            i++;
+            while (i < sorted.length && sorted[i] - sorted[i - 1] <= pageSize && loadedKey(sorted[i]) < 0) {
+                i++;
+            }
+            int anchor = knownPages.previousSetBit(sorted[start] / pageSize);
+            long after = anchor < 0 ? Long.MIN_VALUE : afterKey[anchor];
+            int offset = sorted[start] - Math.max(anchor, 0) * pageSize;
+            runs.add(new KeyRun(start, i, sorted[i - 1] - sorted[start] + 1, after, offset));
+        }
+
+        return context -> {
+            BitSet found = new BitSet(keys.length);
+            found.set(0, keys.length);
+            if (!runs.isEmpty()) {
+                try (Connection connection = pool.get().getConnection()) {
+                    PreparedStatement pstmt = context.track(connection.prepareStatement(keysSql));
+                    for (KeyRun run : runs) {
+                        pstmt.setLong(1, run.after);
+                        pstmt.setInt(2, run.count);
+                        pstmt.setInt(3, run.offset);
+                        int next = run.start;
+                        int row = sorted[run.start];
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (next < run.end && rs.next()) {
+                                if (row++ == sorted[next]) {
+                                    keys[next++] = rs.getInt(1);
+                                }
+                            }
+                        }
+                        // Fewer rows than asked for: some were deleted since the count
+                        found.clear(next, run.end);
+                        context.checkCancelled();
+                    }
+                    pstmt.close();
+                }
+            }
+            if (found.cardinality() == keys.length) {
+                return keys;
+            }
+            return found.stream().map(index -> keys[index]).toArray();
+        };
+    }
+
+    // The key of a row on a loaded page, or -1 if it is not loaded
+    private int loadedKey(int row) {
+        ColumnarRows rows = pages.get(row / pageSize);
+        int index = row % pageSize;
+        return rows != null && index < rows.getRowCount() ? rows.getInt(index, 0) : -1;
+    }
+
+    private boolean countInProgress() {
+        return dataAccess.isRefreshing(label + "#count");
+    }
+
+    private static int indexOf(ColumnarRows rows, int key) {
+        int low = 0;
+        int high = rows.getRowCount() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = rows.getInt(mid, 0);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Number of pages currently held in memory.
+     */
+    public int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    private int pageCount() {
+        return (rowCount + pageSize - 1) / pageSize;
+    }
+
+    private String pageKey(int page) {
+        return label + "@" + generation + "#" + page;
+    }
+
+    private void requestPage(int page, boolean prefetch) {
+        if (page >= afterKey.length || pages.containsKey(page) || failedPages.get(page)
+                || dataAccess.isRefreshing(pageKey(page))) {
+            return;
+        }
+
+        // Start from the nearest page whose lower bound is known
+        int anchor = knownPages.previousSetBit(page);
+        long after = afterKey[anchor];
+        int offset = (page - anchor) * pageSize;
+        int pageGeneration = generation;
+
+        dataAccess.refresh(pageKey(page), "Loading " + label, context -> {
+            try (Connection connection = pool.get().getConnection()) {
+                PreparedStatement pstmt = context.track(
+                        connection.prepareStatement(offset == 0 ? pageSql : pageWithOffsetSql));
+                pstmt.setLong(1, after);
+                pstmt.setInt(2, pageSize);
+                if (offset > 0) {
+                    pstmt.setInt(3, offset);
+                }
+                ResultSet rs = pstmt.executeQuery();
+                ColumnarRows rows = ColumnarRows.read(rs, pageSize, strings, count -> context.checkCancelled());
+                rs.close();
+                pstmt.close();
+                return rows;
+            }
+        }, rows -> pageLoaded(pageGeneration, page, rows, prefetch), e -> {
+            if (pageGeneration != generation) {
+                return;
+            }
+            // Do not retry on every repaint; the next reload() tries again
+            boolean firstFailure = failedPages.isEmpty();
+            failedPages.set(page);
+            if (firstFailure) {
+                errorHandler.accept(e);
+            }
+        });
+    }
+
+    private void pageLoaded(int pageGeneration, int page, ColumnarRows rows, boolean prefetch) {
+        if (pageGeneration != generation) {
+            return;
+        }
+        pages.put(page, rows);
+
+        // The last key of this page is where the next page starts
+        if (rows.getRowCount() > 0 && page + 1 < afterKey.length) {
+            afterKey[page + 1] = rows.getInt(rows.getRowCount() - 1, 0);
+            knownPages.set(page + 1);
+        }
+
+        int first = page * pageSize;
+        int last = Math.min(rowCount, first + pageSize) - 1;
+        if (last >= first) {
+            fireTableRowsUpdated(first, last);
+        }
+
+        // Read ahead one page, so scrolling down finds it already loaded
+        if (!prefetch) {
+            requestPage(page + 1, true);
+        }
+    }
+}
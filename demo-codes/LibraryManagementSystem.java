@@ -1,10 +1,11 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.sql.*;
-import java.util.Vector;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Library Management System using JDBC and Swing for CRUD operations
@@ -12,44 +13,128 @@ import java.util.Vector;
  */
 public class LibraryManagementSystem extends JFrame {
 
-    // JDBC Connection details
-    private static final String DB_URL = "jdbc:mysql://localhost:3308/library";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "";
+    // JDBC Connection details (override with -Djdbc.url=..., e.g. an embedded H2 database for tests)
+    private static final String DB_URL = System.getProperty("jdbc.url", "jdbc:mysql://localhost:3308/library");
+    private static final String DB_USER = System.getProperty("jdbc.user", "root");
+    private static final String DB_PASSWORD = System.getProperty("jdbc.password", "");
+
+    // Library schema; append new migrations at the end and never edit one that has shipped
+    static final SchemaMigrator SCHEMA = new SchemaMigrator("library",
+            new SchemaMigrator.Migration(1, "Create tables",
+                    "CREATE TABLE IF NOT EXISTS Publishers (" +
+                            "publisher_id INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "name VARCHAR(100) NOT NULL, " +
+                            "address VARCHAR(200)" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS Authors (" +
+                            "author_id INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "first_name VARCHAR(50) NOT NULL, " +
+                            "last_name VARCHAR(50) NOT NULL" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS Books (" +
+                            "book_id INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "title VARCHAR(100) NOT NULL, " +
+                            "isbn VARCHAR(20) UNIQUE, " +
+                            "publication_year INT, " +
+                            "publisher_id INT, " +
+                            "FOREIGN KEY (publisher_id) REFERENCES Publishers(publisher_id)" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS BooksAuthors (" +
+                            "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "book_id INT, " +
+                            "author_id INT, " +
+                            "FOREIGN KEY (book_id) REFERENCES Books(book_id), " +
+                            "FOREIGN KEY (author_id) REFERENCES Authors(author_id), " +
+                            "UNIQUE(book_id, author_id)" +
+                            ")"),
+            // Columns the join, delete and lookup paths filter on (book_id is covered by the UNIQUE key)
+            new SchemaMigrator.Migration(2, "Index foreign keys and lookup columns",
+                    "CREATE INDEX idx_books_publisher ON Books (publisher_id)",
+                    "CREATE INDEX idx_books_authors_author ON BooksAuthors (author_id)",
+                    "CREATE INDEX idx_authors_last_name ON Authors (last_name)"),
+            // Set by the database on every insert and update, so changed rows can be read by watermark
+            new SchemaMigrator.Migration(3, "Track row changes with updated_at",
+                    "ALTER TABLE Books ADD COLUMN updated_at TIMESTAMP(3) " +
+                            "DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) NOT NULL",
+                    "ALTER TABLE Authors ADD COLUMN updated_at TIMESTAMP(3) " +
+                            "DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) NOT NULL",
+                    "ALTER TABLE Publishers ADD COLUMN updated_at TIMESTAMP(3) " +
+                            "DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) NOT NULL",
+                    "CREATE INDEX idx_books_updated_at ON Books (updated_at)",
+                    "CREATE INDEX idx_authors_updated_at ON Authors (updated_at)",
+                    "CREATE INDEX idx_publishers_updated_at ON Publishers (updated_at)"),
+            // Incremented by every update, so concurrent edits are detected (see VersionedUpdate)
+            new SchemaMigrator.Migration(4, "Add row versions for optimistic locking",
+                    "ALTER TABLE Books ADD COLUMN version INT DEFAULT 0 NOT NULL",
+                    "ALTER TABLE Authors ADD COLUMN version INT DEFAULT 0 NOT NULL",
+                    "ALTER TABLE Publishers ADD COLUMN version INT DEFAULT 0 NOT NULL"));
+
+    // Columns of the table models and the entity caches; the primary key comes first and the
+    // row version, which is not shown, last
+    private static final String[] BOOK_COLUMNS = {"book_id", "title", "isbn", "publication_year", "publisher_id",
+            "version"};
+    private static final String[] AUTHOR_COLUMNS = {"author_id", "first_name", "last_name", "version"};
+    private static final String[] PUBLISHER_COLUMNS = {"publisher_id", "name", "address", "version"};
 
     // UI Components
     private JTabbedPane tabbedPane;
-    private Connection connection;
+    private JProgressBar progressBar;
+    private JLabel activityLabel;
+    // Shown in the status bar when no job is running, until the next job starts
+    private String idleStatus = "Ready";
+    private int runningJobs;
+    private JButton cancelButton;
+
+    // Database access; all queries run on dataAccess threads, never on the Event Dispatch Thread
+    private volatile ConnectionPool pool;
+    private final DataAccessExecutor dataAccess = DataAccessExecutor.create();
+
+    // Recently used rows by id. Writes read back just the row they changed and patch the
+    // table models with it, instead of reloading whole tables
+    private final EntityCache bookCache = new EntityCache("Books", BOOK_COLUMNS, 10_000);
+    private final EntityCache authorCache = new EntityCache("Authors", AUTHOR_COLUMNS, 10_000);
+    private final EntityCache publisherCache = new EntityCache("Publishers", PUBLISHER_COLUMNS, 10_000);
 
     // Book panel components
     private JTable booksTable;
-    private DefaultTableModel booksTableModel;
+    private KeysetTableModel booksTableModel;
     private JTextField bookIdField, bookTitleField, bookIsbnField, bookYearField, bookPublisherIdField;
+    private JTextField bookSearchField;
+    private JCheckBox bookSearchPrefixBox;
+
+    // Trigram index over Books.title for title search; null until built, then searches fall back to LIKE
+    private static final String TITLE_INDEX_SQL = "SELECT book_id, title FROM Books";
+    private static final int MAX_SEARCH_RESULTS = 500;
+    private volatile TrigramIndex titleIndex;
 
     // Author panel components
     private JTable authorsTable;
-    private DefaultTableModel authorsTableModel;
+    private KeysetTableModel authorsTableModel;
     private JTextField authorIdField, authorFirstNameField, authorLastNameField;
 
     // Publisher panel components
     private JTable publishersTable;
-    private DefaultTableModel publishersTableModel;
+    private KeysetTableModel publishersTableModel;
     private JTextField publisherIdField, publisherNameField, publisherAddressField;
 
+    // The row each form was filled from, with its version: updates write only the fields
+    // that differ from it, and only if the row still has that version
+    private Object[] editedBook, editedAuthor, editedPublisher;
+
     // BookAuthor panel components
     private JTable bookAuthorsTable;
-    private DefaultTableModel bookAuthorsTableModel;
+    private BookAuthorView bookAuthorsTableModel;
     private JTextField bookAuthorIdField, baBookIdField, baAuthorIdField;
 
     public LibraryManagementSystem() {
         super("Library Management System");
 
-        // Initialize database connection
-        initializeConnection();
-
         // Initialize UI
         initializeUI();
 
+        // Initialize database connection in the background, then load the tables
+        initializeConnection();
+
         // Set JFrame properties
         setSize(800, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -57,72 +142,46 @@ public class LibraryManagementSystem extends JFrame {
     }
 
     private void initializeConnection() {
-        try {
+        dataAccess.execute("Connecting to database", context -> {
             // Load JDBC Driver
-            Class.forName("com.mysql.cj.jdbc.Driver");
+            if (DB_URL.startsWith("jdbc:mysql:")) {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            }
 
-            // Establish connection
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            System.out.println("Database connection established");
+            // Open the connection pool; each operation borrows a connection and returns it when done
+            pool = ConnectionPool.create(DB_URL, DB_USER, DB_PASSWORD);
+            System.out.println("Database connection pool established");
 
-            // Create tables if they don't exist
-            createTablesIfNotExist();
+            // Create the tables, or bring an existing database up to the latest schema version
+            migrateSchema();
 
-        } catch (ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this, "JDBC Driver not found: " + e.getMessage());
-            System.exit(1);
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Database connection error: " + e.getMessage());
+            // Changes from here on can be picked up by updated_at
+            try (Connection connection = pool.getConnection()) {
+                bookCache.startWatermark(connection);
+                authorCache.startWatermark(connection);
+                publisherCache.startWatermark(connection);
+            }
+            return null;
+        }, ignored -> {
+            loadPublishers();
+            loadBooks();
+            loadAuthors();
+            loadBookAuthors();
+            buildTitleIndex();
+        }, e -> {
+            if (e instanceof ClassNotFoundException) {
+                JOptionPane.showMessageDialog(this, "JDBC Driver not found: " + e.getMessage());
+            } else {
+                JOptionPane.showMessageDialog(this, "Database connection error: " + e.getMessage());
+            }
             System.exit(1);
-        }
+        });
     }
 
-    private void createTablesIfNotExist() throws SQLException {
-        Statement stmt = connection.createStatement();
-
-        // Create Publishers table
-        stmt.executeUpdate(
-                "CREATE TABLE IF NOT EXISTS Publishers (" +
-                        "publisher_id INT AUTO_INCREMENT PRIMARY KEY, " +
-                        "name VARCHAR(100) NOT NULL, " +
-                        "address VARCHAR(200)" +
-                        ")"
-        );
-
-        // Create Authors table
-        stmt.executeUpdate(
-                "CREATE TABLE IF NOT EXISTS Authors (" +
-                        "author_id INT AUTO_INCREMENT PRIMARY KEY, " +
-                        "first_name VARCHAR(50) NOT NULL, " +
-                        "last_name VARCHAR(50) NOT NULL" +
-                        ")"
-        );
-
-        // Create Books table
-        stmt.executeUpdate(
-                "CREATE TABLE IF NOT EXISTS Books (" +
-                        "book_id INT AUTO_INCREMENT PRIMARY KEY, " +
-                        "title VARCHAR(100) NOT NULL, " +
-                        "isbn VARCHAR(20) UNIQUE, " +
-                        "publication_year INT, " +
-                        "publisher_id INT, " +
-                        "FOREIGN KEY (publisher_id) REFERENCES Publishers(publisher_id)" +
-                        ")"
-        );
-
-        // Create BooksAuthors table
-        stmt.executeUpdate(
-                "CREATE TABLE IF NOT EXISTS BooksAuthors (" +
-                        "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                        "book_id INT, " +
-                        "author_id INT, " +
-                        "FOREIGN KEY (book_id) REFERENCES Books(book_id), " +
-                        "FOREIGN KEY (author_id) REFERENCES Authors(author_id), " +
-                        "UNIQUE(book_id, author_id)" +
-                        ")"
-        );
-
-        stmt.close();
+    private void migrateSchema() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            SCHEMA.migrate(connection);
+        }
     }
 
     private void initializeUI() {
@@ -137,6 +196,108 @@ public class LibraryManagementSystem extends JFrame {
 
         // Add tabbed pane to frame
         getContentPane().add(tabbedPane);
+
+        // Status bar showing background database work
+        JPanel statusPanel = new JPanel(new BorderLayout(5, 0));
+        activityLabel = new JLabel("Ready");
+        progressBar = new JProgressBar();
+        progressBar.setVisible(false);
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(e -> dataAccess.cancelRefreshes());
+        statusPanel.add(activityLabel, BorderLayout.WEST);
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+        statusPanel.add(cancelButton, BorderLayout.EAST);
+        getContentPane().add(statusPanel, BorderLayout.SOUTH);
+
+        dataAccess.setActivityListener(this::showActivity);
+    }
+
+    private void showActivity(int runningJobs, String description) {
+        boolean busy = runningJobs > 0;
+        if (runningJobs > this.runningJobs) {
+            idleStatus = "Ready";
+        }
+        this.runningJobs = runningJobs;
+        progressBar.setIndeterminate(busy);
+        progressBar.setVisible(busy);
+        cancelButton.setEnabled(busy);
+        activityLabel.setText(busy ? description + "..." : idleStatus);
+    }
+
+    /**
+     * Shows a message from background work, e.g. a problem that does not need a dialog, in
+     * the status bar once no job is running.
+     */
+    private void showStatus(String message) {
+        idleStatus = message;
+        if (runningJobs == 0) {
+            activityLabel.setText(message);
+        }
+    }
+
+    /**
+     * Text for a form field; cells that are NULL or not loaded yet give an empty field.
+     */
+    private static String text(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    /**
+     * All values of a model row, including columns that are not shown.
+     */
+    private static Object[] rowValues(TableModel model, int row) {
+        Object[] values = new Object[model.getColumnCount()];
+        for (int column = 0; column < values.length; column++) {
+            values[column] = model.getValueAt(row, column);
+        }
+        return values;
+    }
+
+    /**
+     * The version of the row a form was filled from, or null if the form is not showing a
+     * fully loaded row with the given id.
+     */
+    private static Integer editedVersion(Object[] edited, String idText) {
+        if (edited == null || !idText.equals(text(edited[0])) || edited[edited.length - 1] == null) {
+            return null;
+        }
+        return ((Number) edited[edited.length - 1]).intValue();
+    }
+
+    /**
+     * The outcome of a VersionedUpdate: whether it was written, and the row as it is now,
+     * which is null if the row was deleted.
+     */
+    private static final class UpdateOutcome {
+        final boolean saved;
+        final Object[] row;
+
+        UpdateOutcome(boolean saved, Object[] row) {
+            this.saved = saved;
+            this.row = row;
+        }
+    }
+
+    /**
+     * After a conflict, shows the current values in the form fields that were not changed,
+     * so that pressing Update again writes only the fields that were. fields[i] shows
+     * columns[i], which is row[i + 1].
+     */
+    private static void refillUnchangedFields(Object[] row, List<String> changed, String[] columns,
+                                              JTextField... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (!changed.contains(columns[i])) {
+                fields[i].setText(text(row[i + 1]));
+            }
+        }
+    }
+
+    private static UpdateOutcome save(Connection connection, VersionedUpdate update, EntityCache cache)
+            throws SQLException {
+        boolean saved = update.execute(connection);
+        // Read the row as it is now: our values, or the other user's after a conflict
+        return new UpdateOutcome(saved, cache.refresh(connection, update.getKey()));
     }
 
     // BOOKS PANEL
@@ -144,11 +305,27 @@ public class LibraryManagementSystem extends JFrame {
         JPanel panel = new JPanel(new BorderLayout());
 
         // Table model for books
-        String[] bookColumns = {"ID", "Title", "ISBN", "Publication Year", "Publisher ID"};
-        booksTableModel = new DefaultTableModel(bookColumns, 0);
+        // Rows are paged in from the database as they scroll into view
+        String[] bookColumns = {"ID", "Title", "ISBN", "Publication Year", "Publisher ID", "Version"};
+        booksTableModel = new KeysetTableModel(dataAccess, () -> pool, "Books", BOOK_COLUMNS, bookColumns,
+                e -> JOptionPane.showMessageDialog(this, "Error loading books: " + e.getMessage()));
         booksTable = new JTable(booksTableModel);
+        // The version stays in the model for optimistic locking, but is not shown
+        booksTable.removeColumn(booksTable.getColumnModel().getColumn(5));
         JScrollPane tableScrollPane = new JScrollPane(booksTable);
 
+        // Title search above the table
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(new JLabel("Search title:"));
+        bookSearchField = new JTextField(25);
+        bookSearchField.addActionListener(e -> searchBooks());
+        searchPanel.add(bookSearchField);
+        bookSearchPrefixBox = new JCheckBox("Starts with");
+        searchPanel.add(bookSearchPrefixBox);
+        JButton searchBookButton = new JButton("Search");
+        searchBookButton.addActionListener(e -> searchBooks());
+        searchPanel.add(searchBookButton);
+
         // Form panel for book data entry
         JPanel formPanel = new JPanel(new GridLayout(6, 2, 5, 5));
 
@@ -189,7 +366,10 @@ public class LibraryManagementSystem extends JFrame {
         clearBookButton.addActionListener(e -> clearBookFields());
 
         JButton refreshBookButton = new JButton("Refresh");
-        refreshBookButton.addActionListener(e -> loadBooks());
+        refreshBookButton.addActionListener(e -> {
+            loadBooks();
+            checkTitleIndex();
+        });
 
         buttonPanel.add(addBookButton);
         buttonPanel.add(updateBookButton);
@@ -201,15 +381,17 @@ public class LibraryManagementSystem extends JFrame {
         booksTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting() && booksTable.getSelectedRow() != -1) {
                 int selectedRow = booksTable.getSelectedRow();
-                bookIdField.setText(booksTable.getValueAt(selectedRow, 0).toString());
-                bookTitleField.setText(booksTable.getValueAt(selectedRow, 1).toString());
-                bookIsbnField.setText(booksTable.getValueAt(selectedRow, 2).toString());
-                bookYearField.setText(booksTable.getValueAt(selectedRow, 3).toString());
-                bookPublisherIdField.setText(booksTable.getValueAt(selectedRow, 4).toString());
+                bookIdField.setText(text(booksTable.getValueAt(selectedRow, 0)));
+                bookTitleField.setText(text(booksTable.getValueAt(selectedRow, 1)));
+                bookIsbnField.setText(text(booksTable.getValueAt(selectedRow, 2)));
+                bookYearField.setText(text(booksTable.getValueAt(selectedRow, 3)));
+                bookPublisherIdField.setText(text(booksTable.getValueAt(selectedRow, 4)));
+                editedBook = rowValues(booksTableModel, booksTable.convertRowIndexToModel(selectedRow));
             }
         });
 
         // Add components to panel
+        panel.add(searchPanel, BorderLayout.NORTH);
         panel.add(tableScrollPane, BorderLayout.CENTER);
 
         JPanel southPanel = new JPanel(new BorderLayout());
@@ -218,38 +400,131 @@ public class LibraryManagementSystem extends JFrame {
 
         panel.add(southPanel, BorderLayout.SOUTH);
 
-        // Load initial data
-        loadBooks();
-
         return panel;
     }
 
     // BOOK CRUD OPERATIONS
     private void loadBooks() {
-        try {
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT * FROM Books");
+        // Drops the cached pages; visible rows are read again in the background
+        booksTableModel.reload();
+    }
 
-            // Clear existing data
-            booksTableModel.setRowCount(0);
+    private void buildTitleIndex() {
+        dataAccess.refresh("titleIndex", "Indexing book titles", context -> {
+            try (Connection connection = pool.getConnection()) {
+                return TrigramIndex.load(connection, TITLE_INDEX_SQL);
+            }
+        }, index -> titleIndex = index,
+                e -> showStatus("Could not index book titles, searches will query the database: " + e.getMessage()));
+    }
 
-            // Add data to table model
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("book_id"));
-                row.add(rs.getString("title"));
-                row.add(rs.getString("isbn"));
-                row.add(rs.getInt("publication_year"));
-                row.add(rs.getInt("publisher_id"));
-                booksTableModel.addRow(row);
+    /**
+     * Compares the title index with the Books table and repairs it, e.g. after rows were
+     * changed by another program.
+     */
+    private void checkTitleIndex() {
+        TrigramIndex index = titleIndex;
+        if (index == null) {
+            buildTitleIndex();
+            return;
+        }
+        dataAccess.refresh("titleIndexCheck", "Checking title index", context -> {
+            try (Connection connection = pool.getConnection()) {
+                return index.reconcile(connection, TITLE_INDEX_SQL);
+            }
+        }, fixed -> {
+            if (fixed > 0) {
+                showStatus("Title index repaired: " + fixed + " entries were out of date");
             }
+        }, e -> showStatus("Could not check the title index: " + e.getMessage()));
+    }
 
-            rs.close();
-            stmt.close();
+    /**
+     * Finds books whose title contains (or starts with) the search text and shows them in a
+     * dialog. Matching ids come from the title index in memory; only those rows are read from
+     * the database. Without the index, the search falls back to a LIKE query.
+     */
+    private void searchBooks() {
+        String query = bookSearchField.getText().trim();
+        if (query.isEmpty()) {
+            return;
+        }
+        boolean prefix = bookSearchPrefixBox.isSelected();
+        TrigramIndex index = titleIndex;
+
+        int[] ids = null;
+        if (index != null) {
+            ids = prefix ? index.searchPrefix(query) : index.search(query);
+            if (ids.length == 0) {
+                JOptionPane.showMessageDialog(this, "No books found");
+                return;
+            }
+            if (ids.length > MAX_SEARCH_RESULTS) {
+                ids = Arrays.copyOf(ids, MAX_SEARCH_RESULTS);
+            }
+        }
 
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error loading books: " + e.getMessage());
+        int[] matches = ids;
+        dataAccess.refresh("bookSearch", "Searching books", context -> {
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement pstmt;
+                if (matches != null) {
+                    StringBuilder sql = new StringBuilder(
+                            "SELECT book_id, title, isbn, publication_year, publisher_id, version FROM Books WHERE book_id IN (?");
+                    for (int i = 1; i < matches.length; i++) {
+                        sql.append(", ?");
+                    }
+                    sql.append(") ORDER BY book_id");
+                    pstmt = context.track(connection.prepareStatement(sql.toString()));
+                    for (int i = 0; i < matches.length; i++) {
+                        pstmt.setInt(i + 1, matches[i]);
+                    }
+                } else {
+                    // A leading wildcard means a full table scan
+                    pstmt = context.track(connection.prepareStatement(
+                            "SELECT book_id, title, isbn, publication_year, publisher_id, version FROM Books " +
+                                    "WHERE LOWER(title) LIKE ? ORDER BY book_id LIMIT " + MAX_SEARCH_RESULTS));
+                    pstmt.setString(1, (prefix ? "" : "%") + query.toLowerCase() + "%");
+                }
+                ResultSet rs = pstmt.executeQuery();
+                ColumnarRows rows = ColumnarRows.read(rs, matches != null ? matches.length : 64, new StringPool(10_000),
+                        count -> context.checkCancelled());
+                rs.close();
+                pstmt.close();
+                return rows;
+            }
+        }, this::showBookSearchResults,
+                e -> JOptionPane.showMessageDialog(this, "Error searching books: " + e.getMessage()));
+    }
+
+    private void showBookSearchResults(ColumnarRows rows) {
+        if (rows.getRowCount() == 0) {
+            JOptionPane.showMessageDialog(this, "No books found");
+            return;
         }
+        ColumnarTableModel model = new ColumnarTableModel("ID", "Title", "ISBN", "Publication Year", "Publisher ID",
+                "Version");
+        model.setRows(rows);
+        JTable resultsTable = new JTable(model);
+        resultsTable.removeColumn(resultsTable.getColumnModel().getColumn(5));
+
+        JDialog dialog = new JDialog(this, rows.getRowCount() + " matching books", false);
+        // Selecting a result fills the book form, as selecting a row in the main table does
+        resultsTable.getSelectionModel().addListSelectionListener(e -> {
+            int selectedRow = resultsTable.getSelectedRow();
+            if (!e.getValueIsAdjusting() && selectedRow != -1) {
+                bookIdField.setText(text(resultsTable.getValueAt(selectedRow, 0)));
+                bookTitleField.setText(text(resultsTable.getValueAt(selectedRow, 1)));
+                bookIsbnField.setText(text(resultsTable.getValueAt(selectedRow, 2)));
+                bookYearField.setText(text(resultsTable.getValueAt(selectedRow, 3)));
+                bookPublisherIdField.setText(text(resultsTable.getValueAt(selectedRow, 4)));
+                editedBook = rowValues(model, resultsTable.convertRowIndexToModel(selectedRow));
+            }
+        });
+        dialog.add(new JScrollPane(resultsTable));
+        dialog.setSize(600, 300);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
     }
 
     private void addBook() {
@@ -263,37 +538,65 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
+        Integer year;
+        Integer publisherId;
         try {
-            String sql = "INSERT INTO Books (title, isbn, publication_year, publisher_id) VALUES (?, ?, ?, ?)";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
-
-            pstmt.setString(1, title);
-            pstmt.setString(2, isbn.isEmpty() ? null : isbn);
-            pstmt.setInt(3, yearText.isEmpty() ? 0 : Integer.parseInt(yearText));
-            pstmt.setInt(4, publisherIdText.isEmpty() ? 0 : Integer.parseInt(publisherIdText));
+            year = yearText.isEmpty() ? null : Integer.valueOf(yearText);
+            publisherId = publisherIdText.isEmpty() ? null : Integer.valueOf(publisherIdText);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
+            return;
+        }
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
+        dataAccess.execute("Adding book", context -> {
+            try (Connection connection = pool.getConnection()) {
+                checkPublisherExists(connection, publisherId);
+                String sql = "INSERT INTO Books (title, isbn, publication_year, publisher_id) VALUES (?, ?, ?, ?)";
+                PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+                pstmt.setString(1, title);
+                pstmt.setString(2, isbn.isEmpty() ? null : isbn);
+                setNullableInt(pstmt, 3, year);
+                setNullableInt(pstmt, 4, publisherId);
+
+                pstmt.executeUpdate();
+                ResultSet keys = pstmt.getGeneratedKeys();
+                int bookId = keys.next() ? keys.getInt(1) : 0;
+                keys.close();
+                pstmt.close();
+                // Read back only the new row
+                return bookId > 0 ? bookCache.refresh(connection, bookId) : null;
+            }
+        }, book -> {
+            if (book != null) {
+                if (titleIndex != null) {
+                    titleIndex.put((Integer) book[0], title);
+                }
                 JOptionPane.showMessageDialog(this, "Book added successfully");
-                loadBooks();
+                booksTableModel.rowInserted(book);
                 clearBookFields();
             }
-
-            pstmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error adding book: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error adding book: " + e.getMessage()));
     }
 
+    /**
+     * Saves the fields that were changed since the book was selected. If another user
+     * changed the book in the meantime, nothing is saved; the form then shows their
+     * version except in the fields that were changed, so pressing Update again saves
+     * only those over it.
+     */
     private void updateBook() {
         String bookIdText = bookIdField.getText().trim();
         if (bookIdText.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please select a book to update");
             return;
         }
+        Object[] original = editedBook;
+        Integer version = editedVersion(original, bookIdText);
+        if (version == null) {
+            JOptionPane.showMessageDialog(this, "The book is still loading; please select it again");
+            return;
+        }
 
         String title = bookTitleField.getText().trim();
         String isbn = bookIsbnField.getText().trim();
@@ -305,71 +608,172 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
+        int bookId;
+        Integer year;
+        Integer publisherId;
         try {
-            String sql = "UPDATE Books SET title = ?, isbn = ?, publication_year = ?, publisher_id = ? WHERE book_id = ?";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
+            bookId = Integer.parseInt(bookIdText);
+            year = yearText.isEmpty() ? null : Integer.valueOf(yearText);
+            publisherId = publisherIdText.isEmpty() ? null : Integer.valueOf(publisherIdText);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
+            return;
+        }
 
-            pstmt.setString(1, title);
-            pstmt.setString(2, isbn.isEmpty() ? null : isbn);
-            pstmt.setInt(3, yearText.isEmpty() ? 0 : Integer.parseInt(yearText));
-            pstmt.setInt(4, publisherIdText.isEmpty() ? 0 : Integer.parseInt(publisherIdText));
-            pstmt.setInt(5, Integer.parseInt(bookIdText));
+        VersionedUpdate update = new VersionedUpdate("Books", "book_id", bookId, version)
+                .set("title", original[1], title)
+                .set("isbn", original[2], isbn.isEmpty() ? null : isbn)
+                .set("publication_year", original[3], year)
+                .set("publisher_id", original[4], publisherId);
+        if (update.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nothing to update: no field was changed");
+            return;
+        }
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
+        dataAccess.execute("Updating book", context -> {
+            try (Connection connection = pool.getConnection()) {
+                if (update.getChangedColumns().contains("publisher_id")) {
+                    checkPublisherExists(connection, publisherId);
+                }
+                return save(connection, update, bookCache);
+            }
+        }, outcome -> {
+            Object[] book = outcome.row;
+            if (book == null) {
+                if (titleIndex != null) {
+                    titleIndex.remove(bookId);
+                }
+                booksTableModel.rowDeleted(bookId);
+                bookAuthorsTableModel.booksDeleted(new int[]{bookId});
+                clearBookFields();
+                JOptionPane.showMessageDialog(this, "Book not found; another user has deleted it");
+                return;
+            }
+            String currentTitle = (String) book[1];
+            if (titleIndex != null) {
+                titleIndex.put(bookId, currentTitle);
+            }
+            bookAuthorsTableModel.bookUpdated(bookId, currentTitle);
+            booksTableModel.rowUpdated(book);
+            if (outcome.saved) {
                 JOptionPane.showMessageDialog(this, "Book updated successfully");
-                loadBooks();
                 clearBookFields();
             } else {
-                JOptionPane.showMessageDialog(this, "Book not found");
+                editedBook = book;
+                refillUnchangedFields(book, update.getChangedColumns(),
+                        new String[]{"title", "isbn", "publication_year", "publisher_id"},
+                        bookTitleField, bookIsbnField, bookYearField, bookPublisherIdField);
+                JOptionPane.showMessageDialog(this, "Another user changed this book after you selected it, "
+                        + "so your changes were not saved.\nThe form now shows their values except in the fields "
+                        + "you changed;\npress Update again to save your changes over them.");
             }
-
-            pstmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error updating book: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error updating book: " + e.getMessage()));
     }
 
     private void deleteBook() {
+        if (booksTable.getSelectedRowCount() > 1) {
+            deleteSelectedBooks();
+            return;
+        }
+
         String bookIdText = bookIdField.getText().trim();
         if (bookIdText.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please select a book to delete");
             return;
         }
 
+        int bookId;
         try {
-            // First delete from BooksAuthors table (due to foreign key constraints)
-            String deleteBooksAuthors = "DELETE FROM BooksAuthors WHERE book_id = ?";
-            PreparedStatement pstmtBA = connection.prepareStatement(deleteBooksAuthors);
-            pstmtBA.setInt(1, Integer.parseInt(bookIdText));
-            pstmtBA.executeUpdate();
-            pstmtBA.close();
-
-            // Now delete the book
-            String sql = "DELETE FROM Books WHERE book_id = ?";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
-            pstmt.setInt(1, Integer.parseInt(bookIdText));
-
-            int affectedRows = pstmt.executeUpdate();
+            bookId = Integer.parseInt(bookIdText);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
+            return;
+        }
+
+        dataAccess.execute("Deleting book", context -> {
+            try (Connection connection = pool.getConnection()) {
+                // Delete the book's BooksAuthors rows first (foreign key), in the same transaction
+                int[] counts = new UnitOfWork()
+                        .add("DELETE FROM BooksAuthors WHERE book_id = ?", bookId)
+                        .add("DELETE FROM Books WHERE book_id = ?", bookId)
+                        .execute(connection);
+                return counts[1];
+            }
+        }, affectedRows -> {
             if (affectedRows > 0) {
+                if (titleIndex != null) {
+                    titleIndex.remove(bookId);
+                }
+                bookCache.remove(bookId);
                 JOptionPane.showMessageDialog(this, "Book deleted successfully");
-                loadBooks();
+                booksTableModel.rowDeleted(bookId);
+                bookAuthorsTableModel.booksDeleted(new int[]{bookId});
                 clearBookFields();
-                // Refresh BookAuthors table as well
-                loadBookAuthors();
             } else {
                 JOptionPane.showMessageDialog(this, "Book not found");
             }
+        }, e -> JOptionPane.showMessageDialog(this, "Error deleting book: " + e.getMessage()));
+    }
 
-            pstmt.close();
+    /**
+     * Deletes every selected book and its BooksAuthors rows in one transaction, using IN
+     * lists rather than two statements per book.
+     */
+    private void deleteSelectedBooks() {
+        int[] selectedRows = booksTable.getSelectedRows();
+        // Most selected rows may not be loaded, so look up their ids in the background
+        dataAccess.execute("Finding " + selectedRows.length + " selected books", booksTableModel.keysOf(selectedRows),
+                this::deleteBooks, e -> JOptionPane.showMessageDialog(this, "Error finding the selected books: "
+                        + e.getMessage()));
+    }
 
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error deleting book: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
+    private void deleteBooks(int[] bookIds) {
+        if (bookIds.length == 0) {
+            JOptionPane.showMessageDialog(this, "The selected books have already been deleted");
+            return;
+        }
+        if (JOptionPane.showConfirmDialog(this, "Delete " + bookIds.length + " books?", "Delete books",
+                JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        dataAccess.execute("Deleting " + bookIds.length + " books", context -> {
+            try (Connection connection = pool.getConnection()) {
+                int[] counts = new UnitOfWork()
+                        .addIn("DELETE FROM BooksAuthors WHERE book_id IN", bookIds)
+                        .addIn("DELETE FROM Books WHERE book_id IN", bookIds)
+                        .execute(connection);
+                return counts[1];
+            }
+        }, deleted -> {
+            for (int bookId : bookIds) {
+                bookCache.remove(bookId);
+                if (titleIndex != null) {
+                    titleIndex.remove(bookId);
+                }
+            }
+            JOptionPane.showMessageDialog(this, deleted + " books deleted successfully");
+            loadBooks();
+            bookAuthorsTableModel.booksDeleted(bookIds);
+            clearBookFields();
+        }, e -> JOptionPane.showMessageDialog(this, "Error deleting books: " + e.getMessage()));
+    }
+
+    /**
+     * Fails with a clear message, rather than a foreign key error, if there is no such
+     * publisher. Most lookups are answered by the publisher cache.
+     */
+    private void checkPublisherExists(Connection connection, Integer publisherId) throws SQLException {
+        if (publisherId != null && publisherCache.get(connection, publisherId) == null) {
+            throw new SQLException("Publisher " + publisherId + " does not exist");
+        }
+    }
+
+    private static void setNullableInt(PreparedStatement pstmt, int index, Integer value) throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, Types.INTEGER);
+        } else {
+            pstmt.setInt(index, value);
         }
     }
 
@@ -380,6 +784,7 @@ public class LibraryManagementSystem extends JFrame {
         bookYearField.setText("");
         bookPublisherIdField.setText("");
         booksTable.clearSelection();
+        editedBook = null;
     }
 
     // AUTHORS PANEL
@@ -387,9 +792,12 @@ public class LibraryManagementSystem extends JFrame {
         JPanel panel = new JPanel(new BorderLayout());
 
         // Table model for authors
-        String[] authorColumns = {"ID", "First Name", "Last Name"};
-        authorsTableModel = new DefaultTableModel(authorColumns, 0);
+        // Rows are paged in from the database as they scroll into view
+        String[] authorColumns = {"ID", "First Name", "Last Name", "Version"};
+        authorsTableModel = new KeysetTableModel(dataAccess, () -> pool, "Authors", AUTHOR_COLUMNS, authorColumns,
+                e -> JOptionPane.showMessageDialog(this, "Error loading authors: " + e.getMessage()));
         authorsTable = new JTable(authorsTableModel);
+        authorsTable.removeColumn(authorsTable.getColumnModel().getColumn(3));
         JScrollPane tableScrollPane = new JScrollPane(authorsTable);
 
         // Form panel for author data entry
@@ -436,9 +844,10 @@ public class LibraryManagementSystem extends JFrame {
         authorsTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting() && authorsTable.getSelectedRow() != -1) {
                 int selectedRow = authorsTable.getSelectedRow();
-                authorIdField.setText(authorsTable.getValueAt(selectedRow, 0).toString());
-                authorFirstNameField.setText(authorsTable.getValueAt(selectedRow, 1).toString());
-                authorLastNameField.setText(authorsTable.getValueAt(selectedRow, 2).toString());
+                authorIdField.setText(text(authorsTable.getValueAt(selectedRow, 0)));
+                authorFirstNameField.setText(text(authorsTable.getValueAt(selectedRow, 1)));
+                authorLastNameField.setText(text(authorsTable.getValueAt(selectedRow, 2)));
+                editedAuthor = rowValues(authorsTableModel, authorsTable.convertRowIndexToModel(selectedRow));
             }
         });
 
@@ -451,36 +860,13 @@ public class LibraryManagementSystem extends JFrame {
 
         panel.add(southPanel, BorderLayout.SOUTH);
 
-        // Load initial data
-        loadAuthors();
-
         return panel;
     }
 
     // AUTHOR CRUD OPERATIONS
     private void loadAuthors() {
-        try {
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT * FROM Authors");
-
-            // Clear existing data
-            authorsTableModel.setRowCount(0);
-
-            // Add data to table model
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("author_id"));
-                row.add(rs.getString("first_name"));
-                row.add(rs.getString("last_name"));
-                authorsTableModel.addRow(row);
-            }
-
-            rs.close();
-            stmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error loading authors: " + e.getMessage());
-        }
+        // Drops the cached pages; visible rows are read again in the background
+        authorsTableModel.reload();
     }
 
     private void addAuthor() {
@@ -492,33 +878,46 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
-        try {
-            String sql = "INSERT INTO Authors (first_name, last_name) VALUES (?, ?)";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
+        dataAccess.execute("Adding author", context -> {
+            try (Connection connection = pool.getConnection()) {
+                String sql = "INSERT INTO Authors (first_name, last_name) VALUES (?, ?)";
+                PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
-            pstmt.setString(1, firstName);
-            pstmt.setString(2, lastName);
+                pstmt.setString(1, firstName);
+                pstmt.setString(2, lastName);
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
+                pstmt.executeUpdate();
+                ResultSet keys = pstmt.getGeneratedKeys();
+                int authorId = keys.next() ? keys.getInt(1) : 0;
+                keys.close();
+                pstmt.close();
+                return authorId > 0 ? authorCache.refresh(connection, authorId) : null;
+            }
+        }, author -> {
+            if (author != null) {
                 JOptionPane.showMessageDialog(this, "Author added successfully");
-                loadAuthors();
+                authorsTableModel.rowInserted(author);
                 clearAuthorFields();
             }
-
-            pstmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error adding author: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error adding author: " + e.getMessage()));
     }
 
+    /**
+     * Saves the changed name fields, unless another user changed the author meanwhile; see
+     * updateBook().
+     */
     private void updateAuthor() {
         String authorIdText = authorIdField.getText().trim();
         if (authorIdText.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please select an author to update");
             return;
         }
+        Object[] original = editedAuthor;
+        Integer version = editedVersion(original, authorIdText);
+        if (version == null) {
+            JOptionPane.showMessageDialog(this, "The author is still loading; please select it again");
+            return;
+        }
 
         String firstName = authorFirstNameField.getText().trim();
         String lastName = authorLastNameField.getText().trim();
@@ -528,30 +927,49 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
+        int authorId;
         try {
-            String sql = "UPDATE Authors SET first_name = ?, last_name = ? WHERE author_id = ?";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
+            authorId = Integer.parseInt(authorIdText);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
+            return;
+        }
 
-            pstmt.setString(1, firstName);
-            pstmt.setString(2, lastName);
-            pstmt.setInt(3, Integer.parseInt(authorIdText));
+        VersionedUpdate update = new VersionedUpdate("Authors", "author_id", authorId, version)
+                .set("first_name", original[1], firstName)
+                .set("last_name", original[2], lastName);
+        if (update.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nothing to update: no field was changed");
+            return;
+        }
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
+        dataAccess.execute("Updating author", context -> {
+            try (Connection connection = pool.getConnection()) {
+                return save(connection, update, authorCache);
+            }
+        }, outcome -> {
+            Object[] author = outcome.row;
+            if (author == null) {
+                authorsTableModel.rowDeleted(authorId);
+                bookAuthorsTableModel.authorDeleted(authorId);
+                clearAuthorFields();
+                JOptionPane.showMessageDialog(this, "Author not found; another user has deleted it");
+                return;
+            }
+            authorsTableModel.rowUpdated(author);
+            bookAuthorsTableModel.authorUpdated(authorId, (String) author[1], (String) author[2]);
+            if (outcome.saved) {
                 JOptionPane.showMessageDialog(this, "Author updated successfully");
-                loadAuthors();
                 clearAuthorFields();
             } else {
-                JOptionPane.showMessageDialog(this, "Author not found");
+                editedAuthor = author;
+                refillUnchangedFields(author, update.getChangedColumns(), new String[]{"first_name", "last_name"},
+                        authorFirstNameField, authorLastNameField);
+                JOptionPane.showMessageDialog(this, "Another user changed this author after you selected it, "
+                        + "so your changes were not saved.\nThe form now shows their values except in the fields "
+                        + "you changed;\npress Update again to save your changes over them.");
             }
-
-            pstmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error updating author: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error updating author: " + e.getMessage()));
     }
 
     private void deleteAuthor() {
@@ -561,37 +979,34 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
+        int authorId;
         try {
-            // First delete from BooksAuthors table (due to foreign key constraints)
-            String deleteBooksAuthors = "DELETE FROM BooksAuthors WHERE author_id = ?";
-            PreparedStatement pstmtBA = connection.prepareStatement(deleteBooksAuthors);
-            pstmtBA.setInt(1, Integer.parseInt(authorIdText));
-            pstmtBA.executeUpdate();
-            pstmtBA.close();
-
-            // Now delete the author
-            String sql = "DELETE FROM Authors WHERE author_id = ?";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
-            pstmt.setInt(1, Integer.parseInt(authorIdText));
-
-            int affectedRows = pstmt.executeUpdate();
+            authorId = Integer.parseInt(authorIdText);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
+            return;
+        }
+
+        dataAccess.execute("Deleting author", context -> {
+            try (Connection connection = pool.getConnection()) {
+                // Delete the author's BooksAuthors rows first (foreign key), in the same transaction
+                int[] counts = new UnitOfWork()
+                        .add("DELETE FROM BooksAuthors WHERE author_id = ?", authorId)
+                        .add("DELETE FROM Authors WHERE author_id = ?", authorId)
+                        .execute(connection);
+                return counts[1];
+            }
+        }, affectedRows -> {
             if (affectedRows > 0) {
+                authorCache.remove(authorId);
                 JOptionPane.showMessageDialog(this, "Author deleted successfully");
-                loadAuthors();
+                authorsTableModel.rowDeleted(authorId);
+                bookAuthorsTableModel.authorDeleted(authorId);
                 clearAuthorFields();
-                // Refresh BookAuthors table as well
-                loadBookAuthors();
             } else {
                 JOptionPane.showMessageDialog(this, "Author not found");
             }
-
-            pstmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error deleting author: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error deleting author: " + e.getMessage()));
     }
 
     private void clearAuthorFields() {
@@ -599,6 +1014,7 @@ public class LibraryManagementSystem extends JFrame {
         authorFirstNameField.setText("");
         authorLastNameField.setText("");
         authorsTable.clearSelection();
+        editedAuthor = null;
     }
 
     // PUBLISHERS PANEL
@@ -606,9 +1022,13 @@ public class LibraryManagementSystem extends JFrame {
         JPanel panel = new JPanel(new BorderLayout());
 
         // Table model for publishers
-        String[] publisherColumns = {"ID", "Name", "Address"};
-        publishersTableModel = new DefaultTableModel(publisherColumns, 0);
+        // Rows are paged in from the database as they scroll into view
+        String[] publisherColumns = {"ID", "Name", "Address", "Version"};
+        publishersTableModel = new KeysetTableModel(dataAccess, () -> pool, "Publishers", PUBLISHER_COLUMNS,
+                publisherColumns,
+                e -> JOptionPane.showMessageDialog(this, "Error loading publishers: " + e.getMessage()));
         publishersTable = new JTable(publishersTableModel);
+        publishersTable.removeColumn(publishersTable.getColumnModel().getColumn(3));
         JScrollPane tableScrollPane = new JScrollPane(publishersTable);
 
         // Form panel for publisher data entry
@@ -655,10 +1075,12 @@ public class LibraryManagementSystem extends JFrame {
         publishersTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting() && publishersTable.getSelectedRow() != -1) {
                 int selectedRow = publishersTable.getSelectedRow();
-                publisherIdField.setText(publishersTable.getValueAt(selectedRow, 0).toString());
-                publisherNameField.setText(publishersTable.getValueAt(selectedRow, 1).toString());
+                publisherIdField.setText(text(publishersTable.getValueAt(selectedRow, 0)));
+                publisherNameField.setText(text(publishersTable.getValueAt(selectedRow, 1)));
                 Object addressObj = publishersTable.getValueAt(selectedRow, 2);
                 publisherAddressField.setText(addressObj == null ? "" : addressObj.toString());
+                editedPublisher = rowValues(publishersTableModel,
+                        publishersTable.convertRowIndexToModel(selectedRow));
             }
         });
 
@@ -671,36 +1093,13 @@ public class LibraryManagementSystem extends JFrame {
 
         panel.add(southPanel, BorderLayout.SOUTH);
 
-        // Load initial data
-        loadPublishers();
-
         return panel;
     }
 
     // PUBLISHER CRUD OPERATIONS
     private void loadPublishers() {
-        try {
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT * FROM Publishers");
-
-            // Clear existing data
-            publishersTableModel.setRowCount(0);
-
-            // Add data to table model
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt("publisher_id"));
-                row.add(rs.getString("name"));
-                row.add(rs.getString("address"));
-                publishersTableModel.addRow(row);
-            }
-
-            rs.close();
-            stmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error loading publishers: " + e.getMessage());
-        }
+        // Drops the cached pages; visible rows are read again in the background
+        publishersTableModel.reload();
     }
 
     private void addPublisher() {
@@ -712,33 +1111,46 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
-        try {
-            String sql = "INSERT INTO Publishers (name, address) VALUES (?, ?)";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
+        dataAccess.execute("Adding publisher", context -> {
+            try (Connection connection = pool.getConnection()) {
+                String sql = "INSERT INTO Publishers (name, address) VALUES (?, ?)";
+                PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
-            pstmt.setString(1, name);
-            pstmt.setString(2, address.isEmpty() ? null : address);
+                pstmt.setString(1, name);
+                pstmt.setString(2, address.isEmpty() ? null : address);
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
+                pstmt.executeUpdate();
+                ResultSet keys = pstmt.getGeneratedKeys();
+                int publisherId = keys.next() ? keys.getInt(1) : 0;
+                keys.close();
+                pstmt.close();
+                return publisherId > 0 ? publisherCache.refresh(connection, publisherId) : null;
+            }
+        }, publisher -> {
+            if (publisher != null) {
                 JOptionPane.showMessageDialog(this, "Publisher added successfully");
-                loadPublishers();
+                publishersTableModel.rowInserted(publisher);
                 clearPublisherFields();
             }
-
-            pstmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error adding publisher: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error adding publisher: " + e.getMessage()));
     }
 
+    /**
+     * Saves the changed fields, unless another user changed the publisher meanwhile; see
+     * updateBook().
+     */
     private void updatePublisher() {
         String publisherIdText = publisherIdField.getText().trim();
         if (publisherIdText.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please select a publisher to update");
             return;
         }
+        Object[] original = editedPublisher;
+        Integer version = editedVersion(original, publisherIdText);
+        if (version == null) {
+            JOptionPane.showMessageDialog(this, "The publisher is still loading; please select it again");
+            return;
+        }
 
         String name = publisherNameField.getText().trim();
         String address = publisherAddressField.getText().trim();
@@ -748,30 +1160,47 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
+        int publisherId;
         try {
-            String sql = "UPDATE Publishers SET name = ?, address = ? WHERE publisher_id = ?";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
+            publisherId = Integer.parseInt(publisherIdText);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
+            return;
+        }
 
-            pstmt.setString(1, name);
-            pstmt.setString(2, address.isEmpty() ? null : address);
-            pstmt.setInt(3, Integer.parseInt(publisherIdText));
+        VersionedUpdate update = new VersionedUpdate("Publishers", "publisher_id", publisherId, version)
+                .set("name", original[1], name)
+                .set("address", original[2], address.isEmpty() ? null : address);
+        if (update.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nothing to update: no field was changed");
+            return;
+        }
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
+        dataAccess.execute("Updating publisher", context -> {
+            try (Connection connection = pool.getConnection()) {
+                return save(connection, update, publisherCache);
+            }
+        }, outcome -> {
+            Object[] publisher = outcome.row;
+            if (publisher == null) {
+                publishersTableModel.rowDeleted(publisherId);
+                clearPublisherFields();
+                JOptionPane.showMessageDialog(this, "Publisher not found; another user has deleted it");
+                return;
+            }
+            publishersTableModel.rowUpdated(publisher);
+            if (outcome.saved) {
                 JOptionPane.showMessageDialog(this, "Publisher updated successfully");
-                loadPublishers();
                 clearPublisherFields();
             } else {
-                JOptionPane.showMessageDialog(this, "Publisher not found");
+                editedPublisher = publisher;
+                refillUnchangedFields(publisher, update.getChangedColumns(), new String[]{"name", "address"},
+                        publisherNameField, publisherAddressField);
+                JOptionPane.showMessageDialog(this, "Another user changed this publisher after you selected it, "
+                        + "so your changes were not saved.\nThe form now shows their values except in the fields "
+                        + "you changed;\npress Update again to save your changes over them.");
             }
-
-            pstmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error updating publisher: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error updating publisher: " + e.getMessage()));
     }
 
     private void deletePublisher() {
@@ -781,41 +1210,59 @@ public class LibraryManagementSystem extends JFrame {
             return;
         }
 
+        int publisherId;
         try {
-            // First update Books to set publisher_id to null
-            String updateBooks = "UPDATE Books SET publisher_id = NULL WHERE publisher_id = ?";
-            PreparedStatement pstmtBooks = connection.prepareStatement(updateBooks);
-            pstmtBooks.setInt(1, Integer.parseInt(publisherIdText));
-            pstmtBooks.executeUpdate();
-            pstmtBooks.close();
-
-            // Now delete the publisher
-            String sql = "DELETE FROM Publishers WHERE publisher_id = ?";
-            PreparedStatement pstmt = connection.prepareStatement(sql);
-            pstmt.setInt(1, Integer.parseInt(publisherIdText));
-
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
+            publisherId = Integer.parseInt(publisherIdText);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
+            return;
+        }
+
+        dataAccess.execute("Deleting publisher", context -> {
+            try (Connection connection = pool.getConnection()) {
+                int[] bookIds;
+                try (PreparedStatement pstmt = connection.prepareStatement(
+                        "SELECT book_id FROM Books WHERE publisher_id = ?")) {
+                    pstmt.setInt(1, publisherId);
+                    ResultSet rs = pstmt.executeQuery();
+                    int[] ids = new int[16];
+                    int count = 0;
+                    while (rs.next()) {
+                        if (count == ids.length) {
+                            ids = Arrays.copyOf(ids, count * 2);
+                        }
+                        ids[count++] = rs.getInt(1);
+                    }
+                    rs.close();
+                    bookIds = Arrays.copyOf(ids, count);
+                }
+                // Unlink exactly those books and delete the publisher in one transaction. A book
+                // linked to it in the meantime makes the delete fail on the foreign key, which
+                // rolls back the unlinking too
+                int[] counts = new UnitOfWork()
+                        .addIn("UPDATE Books SET publisher_id = NULL, version = version + 1 WHERE book_id IN", bookIds)
+                        .add("DELETE FROM Publishers WHERE publisher_id = ?", publisherId)
+                        .execute(connection);
+                // Read back just the unlinked books
+                return counts[1] > 0 ? bookCache.refresh(connection, bookIds) : null;
+            }
+        }, changedBooks -> {
+            if (changedBooks != null) {
+                publisherCache.remove(publisherId);
                 JOptionPane.showMessageDialog(this, "Publisher deleted successfully");
-                loadPublishers();
+                publishersTableModel.rowDeleted(publisherId);
                 clearPublisherFields();
-                // Refresh Books table
-                loadBooks();
+                // Show the unlinked books without reloading the Books table
+                changedBooks.forEach(booksTableModel::rowUpdated);
             } else {
                 JOptionPane.showMessageDialog(this, "Publisher not found");
             }
-
-            pstmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error deleting publisher: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Invalid number format: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error deleting publisher: " + e.getMessage()));
     }
 
     private void clearPublisherFields() {
         publisherIdField.setText("");
+        editedPublisher = null;
     }
 
 
@@ -826,49 +1273,148 @@ public class LibraryManagementSystem extends JFrame {
         JLabel label = new JLabel("Book Authors");
         panel.add(label);
 
-        bookAuthorsTable = new JTable();
+        // The join is read once; after that, changes made here are applied in memory
+        bookAuthorsTableModel = new BookAuthorView();
+        bookAuthorsTable = new JTable(bookAuthorsTableModel);
         JScrollPane scrollPane = new JScrollPane(bookAuthorsTable);
         panel.add(scrollPane);
 
+        JPanel linkPanel = new JPanel(new FlowLayout());
+        linkPanel.add(new JLabel("Book ID:"));
+        baBookIdField = new JTextField(6);
+        linkPanel.add(baBookIdField);
+        linkPanel.add(new JLabel("Author ID:"));
+        baAuthorIdField = new JTextField(6);
+        linkPanel.add(baAuthorIdField);
+
+        JButton linkButton = new JButton("Link");
+        linkButton.addActionListener(e -> linkBookAuthor());
+        linkPanel.add(linkButton);
+
+        JButton unlinkButton = new JButton("Unlink");
+        unlinkButton.addActionListener(e -> unlinkBookAuthor());
+        linkPanel.add(unlinkButton);
+
         JButton refreshButton = new JButton("Refresh");
         refreshButton.addActionListener(e -> loadBookAuthors());
-        panel.add(refreshButton);
+        linkPanel.add(refreshButton);
+        panel.add(linkPanel);
 
         return panel;
     }
 
+    /**
+     * Runs the book-author join once and shows the result. Later changes are applied to the
+     * view directly, so this is only needed at startup and for changes made elsewhere.
+     */
     private void loadBookAuthors() {
-        try {
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT Books.title, Authors.first_name, Authors.last_name FROM BookAuthors " +
-                    "JOIN Books ON BookAuthors.book_id = Books.book_id " +
-                    "JOIN Authors ON BookAuthors.author_id = Authors.author_id");
+        bookAuthorsTableModel.beginLoad(() -> dataAccess.isRefreshing("bookAuthors"));
+        dataAccess.refresh("bookAuthors", "Loading book authors", context -> {
+            try (Connection connection = pool.getConnection()) {
+                Statement stmt = context.track(connection.createStatement());
+                // Stream the rows instead of buffering the whole join in the driver
+                stmt.setFetchSize(DB_URL.startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 1000);
+
+                // Read all rows here, off the Event Dispatch Thread
+                BookAuthorView.Contents contents = BookAuthorView.load(stmt, new StringPool(100_000),
+                        count -> context.checkCancelled());
+                stmt.close();
+                return contents;
+            }
+        }, bookAuthorsTableModel::setContents, e -> {
+            bookAuthorsTableModel.loadFailed();
+            JOptionPane.showMessageDialog(null, "Error loading book authors: " + e.getMessage());
+        });
+    }
 
-            // Clear existing data
-            bookAuthorsTableModel.setRowCount(0);
+    private void linkBookAuthor() {
+        int bookId;
+        int authorId;
+        try {
+            bookId = Integer.parseInt(baBookIdField.getText().trim());
+            authorId = Integer.parseInt(baAuthorIdField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Enter a book ID and an author ID");
+            return;
+        }
 
-            // Add data to table model
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getString("title"));
-                row.add(rs.getString("first_name"));
-                row.add(rs.getString("last_name"));
-                bookAuthorsTableModel.addRow(row);
+        dataAccess.execute("Linking book and author", context -> {
+            try (Connection connection = pool.getConnection()) {
+                // The names for the view come from the caches, not from another join
+                Object[] book = bookCache.get(connection, bookId);
+                Object[] author = authorCache.get(connection, authorId);
+                if (book == null || author == null) {
+                    throw new SQLException(book == null ? "Book " + bookId + " does not exist"
+                            : "Author " + authorId + " does not exist");
+                }
+
+                PreparedStatement pstmt = connection.prepareStatement(
+                        "INSERT INTO BooksAuthors (book_id, author_id) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
+                pstmt.setInt(1, bookId);
+                pstmt.setInt(2, authorId);
+                pstmt.executeUpdate();
+                ResultSet keys = pstmt.getGeneratedKeys();
+                int linkId = keys.next() ? keys.getInt(1) : 0;
+                keys.close();
+                pstmt.close();
+                return new Object[]{linkId, book[1], author[1], author[2]};
             }
+        }, link -> {
+            bookAuthorsTableModel.linkInserted((Integer) link[0], bookId, authorId, (String) link[1],
+                    (String) link[2], (String) link[3]);
+            baBookIdField.setText("");
+            baAuthorIdField.setText("");
+        }, e -> JOptionPane.showMessageDialog(this, "Error linking book and author: " + e.getMessage()));
+    }
 
-            rs.close();
-            stmt.close();
-
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Error loading book authors: " + e.getMessage());
+    private void unlinkBookAuthor() {
+        int bookId;
+        int authorId;
+        try {
+            bookId = Integer.parseInt(baBookIdField.getText().trim());
+            authorId = Integer.parseInt(baAuthorIdField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Enter a book ID and an author ID");
+            return;
         }
+
+        dataAccess.execute("Unlinking book and author", context -> {
+            try (Connection connection = pool.getConnection()) {
+                // (book_id, author_id) is unique, so there is at most one link
+                PreparedStatement pstmt = connection.prepareStatement(
+                        "SELECT id FROM BooksAuthors WHERE book_id = ? AND author_id = ?");
+                pstmt.setInt(1, bookId);
+                pstmt.setInt(2, authorId);
+                ResultSet rs = pstmt.executeQuery();
+                int linkId = rs.next() ? rs.getInt(1) : 0;
+                rs.close();
+                pstmt.close();
+                if (linkId == 0) {
+                    return 0;
+                }
+
+                pstmt = connection.prepareStatement("DELETE FROM BooksAuthors WHERE id = ?");
+                pstmt.setInt(1, linkId);
+                int affectedRows = pstmt.executeUpdate();
+                pstmt.close();
+                return affectedRows > 0 ? linkId : 0;
+            }
+        }, linkId -> {
+            if (linkId > 0) {
+                bookAuthorsTableModel.linkDeleted(linkId);
+                baBookIdField.setText("");
+                baAuthorIdField.setText("");
+            } else {
+                JOptionPane.showMessageDialog(this, "That book and author are not linked");
+            }
+        }, e -> JOptionPane.showMessageDialog(this, "Error unlinking book and author: " + e.getMessage()));
     }
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
+            // The tables are loaded in the background once the database connection is up
             LibraryManagementSystem lms = new LibraryManagementSystem();
-            lms.loadPublishers();
-            lms.loadBooks();
+            lms.setVisible(true);
         });
     }
 }
@@ -0,0 +1,517 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Headless load generator for the query patterns of JDBCDemo and LibraryManagementSystem,
+ * to see how they behave under concurrency and how large the pool and the database need
+ * to be.
+ *
+ * A number of simulated users each run operations back to back (or with a think time),
+ * chosen at random from a weighted mix:
+ *
+ *   view      all students, as JDBCDemo option 1
+ *   search    a name search through the in-memory trigram index, then the matching rows by id
+ *   add       insert a student
+ *   update    set one student's GPA
+ *   delete    delete one student
+ *   join      the books of one author, joining BooksAuthors and Books
+ *
+ * Every operation borrows its own pooled connection, as the applications do, so its
+ * latency includes the wait for a connection. After a warm-up, the tool records each
+ * operation's latency in a LatencyHistogram and samples how many connections are in use
+ * and how many threads wait for one. It reports throughput, percentiles per operation and
+ * pool saturation, then the pool's JdbcMetrics table of time per SQL statement. If the
+ * pool is saturated most of the time while the database is not busy, the pool is too
+ * small; if the latencies grow with more users while the pool has room, the database is
+ * the limit.
+ *
+ * Users run on virtual threads when the JVM has them (Java 21 and later), so thousands of
+ * users cost little; otherwise on one platform thread each. A JDBC driver that blocks
+ * inside synchronized code pins the virtual thread to its carrier, which limits how many
+ * queries can wait at once; use a recent driver.
+ *
+ * The tables are created and seeded with rowCount students and books and rowCount / 10
+ * authors. The tables live in a ScratchDatabase, which must be empty and is emptied again
+ * at the end.
+ *
+ * Settings can be given as system properties, plus jdbc.pool.* for the pool under test:
+ *   jdbc.load.mix             operation weights (default view=1,search=30,add=10,update=30,delete=9,join=20)
+ *   jdbc.load.rows            rows to seed (default 100000)
+ *   jdbc.load.warmupSeconds   run time before measuring starts (default 5)
+ *   jdbc.load.thinkMillis     pause between one user's operations (default 0)
+ *   jdbc.load.threads         virtual or platform (default virtual where available)
+ *
+ * Usage: java -Djdbc.url=... LoadTest [users] [seconds]   (default 1000 users for 30 s)
+ */
+public class LoadTest {
+
+    private static final String[] OPERATIONS = {"view", "search", "add", "update", "delete", "join"};
+    private static final String DEFAULT_MIX = "view=1,search=30,add=10,update=30,delete=9,join=20";
+
+    private static final String[] FIRST_NAMES = {"John", "Maria", "Wei", "Priya", "Mohammed", "Anna", "Kofi", "Yuki"};
+    private static final String[] LAST_NAMES = {"Smith", "Garcia", "Chen", "Patel", "Ali", "Novak", "Mensah", "Sato"};
+
+    private static final long SAMPLE_MILLIS = 100;
+    private static final long PROGRESS_MILLIS = 5_000;
+
+    /**
+     * Ids of the students that exist, for picking one at random. Synchronized; every
+     * operation holds the lock only for an array access.
+     */
+    private static final class IdPool {
+        private int[] ids = new int[1024];
+        private int size;
+
+        synchronized void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        synchronized int pick(Random random) {
+            return size == 0 ? 0 : ids[random.nextInt(size)];
+        }
+
+        /**
+         * Removes and returns a random id, or 0 if there are none.
+         */
+        synchronized int take(Random random) {
+            if (size == 0) {
+                return 0;
+            }
+            int index = random.nextInt(size);
+            int id = ids[index];
+            ids[index] = ids[--size];
+            return id;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final int rows;
+    private final int authors;
+    private final int[] cumulativeWeights;
+    private final long thinkMillis;
+
+    private final IdPool studentIds = new IdPool();
+    // Numbers the students added during the run, whose emails must be unique
+    private final AtomicLong added = new AtomicLong();
+    private TrigramIndex nameIndex;
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final AtomicLong[] errors = new AtomicLong[OPERATIONS.length];
+    private final List<AtomicReference<String>> firstErrors = new ArrayList<>();
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+    private volatile boolean measuring;
+
+    // Pool samples, taken by one thread
+    private long samples;
+    private long saturatedSamples;
+    private long inUseSum;
+    private long waitingSum;
+    private int maxWaiting;
+
+    private LoadTest(ConnectionPool pool, int rows, String mix, long thinkMillis) {
+        this.pool = pool;
+        this.rows = rows;
+        this.authors = Math.max(1, rows / 10);
+        this.cumulativeWeights = parseMix(mix);
+        this.thinkMillis = thinkMillis;
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            latencies[op] = new LatencyHistogram();
+            errors[op] = new AtomicLong();
+            firstErrors.add(new AtomicReference<>());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int rows = Integer.getInteger("jdbc.load.rows", 100_000);
+        int warmupSeconds = Integer.getInteger("jdbc.load.warmupSeconds", 5);
+
+        try (ScratchDatabase db = ScratchDatabase.open()) {
+            if (db == null) {
+                return;
+            }
+            ConnectionPool pool = db.getPool();
+            try (Connection connection = pool.getConnection()) {
+                JDBCDemo.SCHEMA.migrate(connection);
+                LibraryManagementSystem.SCHEMA.migrate(connection);
+            }
+
+            LoadTest test = new LoadTest(pool, rows, System.getProperty("jdbc.load.mix", DEFAULT_MIX),
+                    Long.getLong("jdbc.load.thinkMillis", 0L));
+            long start = System.nanoTime();
+            test.seed(db);
+            System.out.printf("Seeded %d students and books, %d authors in %.1f s%n", rows, test.authors,
+                    (System.nanoTime() - start) / 1e9);
+            test.run(users, warmupSeconds, seconds);
+        }
+    }
+
+    private void run(int users, int warmupSeconds, int seconds) throws InterruptedException {
+        boolean wantVirtual = !"platform".equals(System.getProperty("jdbc.load.threads", "virtual"));
+        ExecutorService executor = wantVirtual ? newVirtualThreadExecutor() : null;
+        boolean virtual = executor != null;
+        if (!virtual) {
+            executor = Executors.newFixedThreadPool(users);
+        }
+        System.out.printf("%d users on %s threads, pool of %d, warm-up %d s, measuring %d s%n", users,
+                virtual ? "virtual" : "platform", pool.getMaxSize(), warmupSeconds, seconds);
+
+        long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long deadline = measureStart + TimeUnit.SECONDS.toNanos(seconds);
+        for (int user = 0; user < users; user++) {
+            executor.execute(() -> userLoop(deadline));
+        }
+        executor.shutdown();
+
+        // Sample the pool until the users are done
+        long nextProgress = measureStart + TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS);
+        long lastCount = 0;
+        long lastTime = measureStart;
+        while (!executor.awaitTermination(SAMPLE_MILLIS, TimeUnit.MILLISECONDS)) {
+            long now = System.nanoTime();
+            if (!measuring && now >= measureStart) {
+                measuring = true;
+                if (pool.getMetrics() != null) {
+                    pool.getMetrics().reset();
+                }
+            }
+            if (measuring && now < deadline) {
+                samplePool();
+            }
+            if (now >= nextProgress && now < deadline) {
+                long count = totalCount();
+                System.out.printf("  %3.0f s: %8.0f ops/s, %d of %d connections in use, %d threads waiting%n",
+                        (now - measureStart) / 1e9, (count - lastCount) / ((now - lastTime) / 1e9),
+                        pool.getInUseCount(), pool.getMaxSize(), pool.getWaitingCount());
+                lastCount = count;
+                lastTime = now;
+                nextProgress += TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS);
+            }
+        }
+        report(seconds);
+    }
+
+    private void userLoop(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            runOperation(pickOperation(random), random);
+            if (thinkMillis > 0) {
+                try {
+                    Thread.sleep(thinkMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void runOperation(int op, ThreadLocalRandom random) {
+        long start = System.nanoTime();
+        boolean measured = measuring;
+        try (Connection connection = pool.getConnection()) {
+            if (measured) {
+                connectionWait.record(System.nanoTime() - start);
+            }
+            switch (op) {
+                case 0:
+                    viewAll(connection);
+                    break;
+                case 1:
+                    search(connection, random);
+                    break;
+                case 2:
+                    add(connection, random);
+                    break;
+                case 3:
+                    updateGpa(connection, random);
+                    break;
+                case 4:
+                    delete(connection, random);
+                    break;
+                default:
+                    booksOfAuthor(connection, random);
+            }
+            if (measured) {
+                latencies[op].record(System.nanoTime() - start);
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (measured) {
+                errors[op].incrementAndGet();
+                firstErrors.get(op).compareAndSet(null, e.toString());
+            }
+        }
+    }
+
+    private void viewAll(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery("SELECT * FROM students ORDER BY id");
+            while (rs.next()) {
+                rs.getInt("id");
+                rs.getString("name");
+                rs.getString("email");
+                rs.getDouble("gpa");
+            }
+            rs.close();
+        }
+    }
+
+    private void search(Connection connection, ThreadLocalRandom random) throws SQLException {
+        // A last name and the start of a number, e.g. "Chen 4821", as a user would type it
+        int n = random.nextInt(Math.max(1, rows / 10), rows + 1);
+        int[] ids = nameIndex.search(LAST_NAMES[n % LAST_NAMES.length] + " " + n);
+        if (ids.length == 0) {
+            return;
+        }
+        int[] batch = Arrays.copyOf(ids, Math.min(ids.length, 500));
+        StringBuilder sql = new StringBuilder("SELECT * FROM students WHERE id IN (?");
+        for (int i = 1; i < batch.length; i++) {
+            sql.append(", ?");
+        }
+        sql.append(") ORDER BY id");
+        try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < batch.length; i++) {
+                pstmt.setInt(i + 1, batch[i]);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                rs.getString("name");
+            }
+            rs.close();
+        }
+    }
+
+    private void add(Connection connection, ThreadLocalRandom random) throws SQLException {
+        int n = random.nextInt(rows) + 1;
+        String name = studentName(n);
+        long number = added.incrementAndGet();
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "INSERT INTO students (name, email, gpa) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, name);
+            pstmt.setString(2, "load" + number + "@example.com");
+            pstmt.setDouble(3, random.nextInt(401) / 100.0);
+            pstmt.executeUpdate();
+            ResultSet keys = pstmt.getGeneratedKeys();
+            if (keys.next()) {
+                int id = keys.getInt(1);
+                studentIds.add(id);
+                nameIndex.put(id, name);
+            }
+            keys.close();
+        }
+    }
+
+    private void updateGpa(Connection connection, ThreadLocalRandom random) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement("UPDATE students SET gpa = ? WHERE id = ?")) {
+            pstmt.setDouble(1, random.nextInt(401) / 100.0);
+            pstmt.setInt(2, studentIds.pick(random));
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void delete(Connection connection, ThreadLocalRandom random) throws SQLException {
+        int id = studentIds.take(random);
+        try (PreparedStatement pstmt = connection.prepareStatement("DELETE FROM students WHERE id = ?")) {
+            pstmt.setInt(1, id);
+            pstmt.executeUpdate();
+        }
+        nameIndex.remove(id);
+    }
+
+    private void booksOfAuthor(Connection connection, ThreadLocalRandom random) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT Books.book_id, Books.title FROM BooksAuthors " +
+                        "JOIN Books ON BooksAuthors.book_id = Books.book_id WHERE BooksAuthors.author_id = ?")) {
+            pstmt.setInt(1, random.nextInt(authors) + 1);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                rs.getString(2);
+            }
+            rs.close();
+        }
+    }
+
+    private int pickOperation(ThreadLocalRandom random) {
+        int r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int op = 0;
+        while (r >= cumulativeWeights[op]) {
+            op++;
+        }
+        return op;
+    }
+
+    private void samplePool() {
+        int inUse = pool.getInUseCount();
+        int waiting = pool.getWaitingCount();
+        samples++;
+        inUseSum += inUse;
+        waitingSum += waiting;
+        maxWaiting = Math.max(maxWaiting, waiting);
+        if (inUse >= pool.getMaxSize()) {
+            saturatedSamples++;
+        }
+    }
+
+    private long totalCount() {
+        long count = 0;
+        for (LatencyHistogram histogram : latencies) {
+            count += histogram.getCount();
+        }
+        return count;
+    }
+
+    private void report(int seconds) {
+        System.out.printf("%n%-8s %9s %7s %9s %9s %9s %9s %9s %9s %9s%n", "Op", "Count", "Errors", "Ops/s",
+                "Mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "Max ms");
+        LatencyHistogram all = new LatencyHistogram();
+        long allErrors = 0;
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            printRow(OPERATIONS[op], latencies[op], errors[op].get(), seconds);
+            all.add(latencies[op]);
+            allErrors += errors[op].get();
+        }
+        printRow("all", all, allErrors, seconds);
+        printRow("borrow", connectionWait, pool.getBorrowTimeouts(), seconds);
+
+        if (samples > 0) {
+            System.out.printf("%nPool: %.1f of %d connections in use on average, all in use %.0f%% of the time, "
+                            + "%.1f threads waiting on average (max %d)%n", (double) inUseSum / samples,
+                    pool.getMaxSize(), 100.0 * saturatedSamples / samples, (double) waitingSum / samples, maxWaiting);
+        }
+        System.out.println(pool.getStats());
+        if (pool.getMetrics() != null) {
+            System.out.println();
+            System.out.print(pool.getMetrics().report());
+        }
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            if (firstErrors.get(op).get() != null) {
+                System.out.println("First " + OPERATIONS[op] + " error: " + firstErrors.get(op).get());
+            }
+        }
+    }
+
+    private static void printRow(String name, LatencyHistogram histogram, long errorCount, int seconds) {
+        System.out.printf("%-8s %9d %7d %9.0f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n", name, histogram.getCount(),
+                errorCount, histogram.getCount() / (double) seconds, histogram.getMeanNanos() / 1e6,
+                histogram.getPercentileNanos(50) / 1e6, histogram.getPercentileNanos(90) / 1e6,
+                histogram.getPercentileNanos(99) / 1e6, histogram.getPercentileNanos(99.9) / 1e6,
+                histogram.getMaxNanos() / 1e6);
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), looked up at run time so the tool still
+     * compiles and runs on Java versions without virtual threads; null there.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[OPERATIONS.length];
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split("=");
+            int op = Arrays.asList(OPERATIONS).indexOf(nameAndWeight[0].trim());
+            if (op < 0 || nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Bad jdbc.load.mix entry '" + part + "'; operations are "
+                        + String.join(", ", OPERATIONS));
+            }
+            weights[op] = Integer.parseInt(nameAndWeight[1].trim());
+        }
+        int[] cumulative = new int[weights.length];
+        int total = 0;
+        for (int op = 0; op < weights.length; op++) {
+            total += weights[op];
+            cumulative[op] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("jdbc.load.mix has no positive weight: " + mix);
+        }
+        return cumulative;
+    }
+
+    private static String studentName(int n) {
+        return FIRST_NAMES[n % FIRST_NAMES.length] + " " + LAST_NAMES[n % LAST_NAMES.length] + " " + n;
+    }
+
+    private void seed(ScratchDatabase db) throws SQLException {
+        db.inChunks(rows, 50_000, (connection, from, to) -> {
+            PreparedStatement students = connection.prepareStatement(
+                    "INSERT INTO students (id, name, email, gpa) VALUES (?, ?, ?, ?)");
+            PreparedStatement books = connection.prepareStatement(
+                    "INSERT INTO Books (book_id, title) VALUES (?, ?)");
+            PreparedStatement authorRows = connection.prepareStatement(
+                    "INSERT INTO Authors (author_id, first_name, last_name) VALUES (?, ?, ?)");
+            PreparedStatement links = connection.prepareStatement(
+                    "INSERT INTO BooksAuthors (id, book_id, author_id) VALUES (?, ?, ?)");
+            for (int i = from; i <= to; i++) {
+                students.setInt(1, i);
+                students.setString(2, studentName(i));
+                students.setString(3, "student" + i + "@example.com");
+                students.setDouble(4, (i % 401) / 100.0);
+                students.addBatch();
+                books.setInt(1, i);
+                books.setString(2, "Title " + i);
+                books.addBatch();
+                if (i <= authors) {
+                    authorRows.setInt(1, i);
+                    authorRows.setString(2, FIRST_NAMES[i % FIRST_NAMES.length]);
+                    authorRows.setString(3, LAST_NAMES[i % LAST_NAMES.length] + i);
+                    authorRows.addBatch();
+                }
+                links.setInt(1, i);
+                links.setInt(2, i);
+                // Author i is inserted along with link i, so every link's author exists
+                links.setInt(3, 1 + (i - 1) % authors);
+                links.addBatch();
+                if (i % 5_000 == 0 || i == to) {
+                    students.executeBatch();
+                    books.executeBatch();
+                    // Authors before the links that refer to them
+                    authorRows.executeBatch();
+                    links.executeBatch();
+                    connection.commit();
+                }
+                studentIds.add(i);
+            }
+            students.close();
+            books.close();
+            authorRows.close();
+            links.close();
+        });
+
+        // Seeded ids were set explicitly; start generated ids after them
+        try (Connection connection = pool.getConnection();
+             Statement stmt = connection.createStatement()) {
+            if (connection.getMetaData().getDatabaseProductName().equals("MySQL")) {
+                stmt.execute("ALTER TABLE students AUTO_INCREMENT = " + (rows + 1));
+            } else {
+                stmt.execute("ALTER TABLE students ALTER COLUMN id RESTART WITH " + (rows + 1));
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not move the students id counter: " + e.getMessage());
+        }
+        try (Connection connection = pool.getConnection()) {
+            nameIndex = TrigramIndex.load(connection, "SELECT id, name FROM students");
+        }
+    }
+}
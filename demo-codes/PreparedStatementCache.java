@@ -0,0 +1,283 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ *
+ * ConnectionPool gives every pooled connection its own cache and routes
+ * Connection.prepareStatement(String) through it, so code that prepares the same
+ * constant SQL on every click reuses the already parsed statement. The caller still
+ * closes the statement as usual; close() only clears its parameters, batch and open
+ * result sets, puts back the max rows, fetch size and query timeout it was prepared
+ * with, and hands it back to the cache.
+ *
+ * A statement is lent to one caller at a time. If the same SQL is prepared again while
+ * the cached copy is still open, the second caller gets a plain statement that is really
+ * closed on close().
+ */
+public class PreparedStatementCache {
+
+    /**
+     * Hit and miss counters, shared by all caches of one pool.
+     */
+    public static final class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        /**
+         * Fraction of prepareStatement calls served from a cache, between 0 and 1.
+         */
+        public double getHitRate() {
+            long h = hits.get();
+            long total = h + misses.get();
+            return total == 0 ? 0 : (double) h / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("statementCache[hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d]",
+                    getHits(), getMisses(), getHitRate() * 100, getEvictions());
+        }
+    }
+
+    private final Map<String, Entry> entries;
+    private final List<Lease> outstanding = new ArrayList<>();
+    private final Stats stats;
+
+    public PreparedStatementCache(final int maxSize, Stats stats) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1: " + maxSize);
+        }
+        this.stats = stats;
+        // Access order turns the LinkedHashMap into an LRU list
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for sql, reusing a cached one when it is free.
+     */
+    public synchronized PreparedStatement prepare(Connection physical, String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse) {
+            stats.hits.incrementAndGet();
+            return lend(entry, true);
+        }
+
+        stats.misses.incrementAndGet();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        Entry fresh;
+        try {
+            fresh = new Entry(sql, statement);
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            throw e;
+        }
+        if (entry == null) {
+            entries.put(sql, fresh);
+            return lend(fresh, true);
+        }
+        // The cached copy is still open elsewhere; this one is closed for real afterwards
+        return lend(fresh, false);
+    }
+
+    /**
+     * Takes back every statement the borrower forgot to close. Called when the
+     * connection goes back to the pool.
+     */
+    public synchronized void releaseAll() {
+        for (Lease lease : new ArrayList<>(outstanding)) {
+            lease.release();
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is closed.
+     */
+    public synchronized void closeAll() {
+        releaseAll();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            closeQuietly(it.next().statement);
+            it.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private PreparedStatement lend(Entry entry, boolean cached) {
+        entry.inUse = true;
+        Lease lease = new Lease(entry, cached);
+        outstanding.add(lease);
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, lease);
+    }
+
+    // Called with the lock held, from removeEldestEntry
+    private void evict(Entry entry) {
+        stats.evictions.incrementAndGet();
+        entry.evicted = true;
+        // A statement that is lent out is closed when the borrower closes it
+        if (!entry.inUse) {
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private synchronized void giveBack(Lease lease) {
+        outstanding.remove(lease);
+        Entry entry = lease.entry;
+        entry.inUse = false;
+
+        if (!lease.cached || entry.evicted || lease.failed) {
+            if (lease.cached && !entry.evicted) {
+                entries.remove(entry.sql);
+            }
+            closeQuietly(entry.statement);
+            return;
+        }
+
+        try {
+            // Leave nothing behind for the next caller
+            for (ResultSet rs : lease.resultSets) {
+                rs.close();
+            }
+            PreparedStatement statement = entry.statement;
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            // A caller may have tuned these for one query; the next one expects the defaults
+            if (statement.getMaxRows() != entry.maxRows) {
+                statement.setMaxRows(entry.maxRows);
+            }
+            if (statement.getFetchSize() != entry.fetchSize) {
+                statement.setFetchSize(entry.fetchSize);
+            }
+            if (statement.getQueryTimeout() != entry.queryTimeout) {
+                statement.setQueryTimeout(entry.queryTimeout);
+            }
+        } catch (SQLException e) {
+            entries.remove(entry.sql);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // The statement is being thrown away anyway
+        }
+    }
+
+    private static final class Entry {
+        final String sql;
+        final PreparedStatement statement;
+        // The settings the statement was prepared with, restored when it is handed back
+        final int maxRows;
+        final int fetchSize;
+        final int queryTimeout;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(String sql, PreparedStatement statement) throws SQLException {
+            this.sql = sql;
+            this.statement = statement;
+            this.maxRows = statement.getMaxRows();
+            this.fetchSize = statement.getFetchSize();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+    }
+
+    /**
+     * One caller's use of a statement. Each prepare() gets its own lease, so using a
+     * statement after closing it cannot disturb the next caller.
+     */
+    private final class Lease implements InvocationHandler {
+        final Entry entry;
+        final boolean cached;
+        final List<ResultSet> resultSets = new ArrayList<>(1);
+        boolean closed;
+        boolean failed;
+
+        Lease(Entry entry, boolean cached) {
+            this.entry = entry;
+            this.cached = cached;
+        }
+
+        void release() {
+            if (!closed) {
+                closed = true;
+                giveBack(this);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.sql + (closed ? ", closed" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+            Object result;
+            try {
+                result = method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                // Do not cache a statement whose state we are unsure of
+                failed = true;
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet) {
+                resultSets.add((ResultSet) result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the result of a SELECT to a CSV or newline-delimited JSON file.
+ *
+ * The query runs on a forward-only, read-only statement with a fetch size, so the driver
+ * does not buffer the whole result: for MySQL the default fetch size is Integer.MIN_VALUE,
+ * which switches Connector/J to row-by-row streaming; other drivers fetch 1000 rows at a
+ * time (auto-commit is switched off for the export, as PostgreSQL needs for cursors).
+ * Each row is formatted into a reused buffer and written through a FileChannel, so memory
+ * stays constant however many rows come back.
+ *
+ * Rows go to a temporary file next to the target, which replaces the target only once the
+ * export has succeeded: a bad query or a failure half way leaves an existing file as it was.
+ * In NDJSON, NaN and infinite values, which JSON numbers cannot express, are written as null.
+ *
+ * The fetch size can be set with -Djdbc.export.fetchSize.
+ */
+public class ResultExporter {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * NDJSON for .json/.ndjson/.jsonl files, CSV for anything else.
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".json") || name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    /**
+     * Outcome of an export.
+     */
+    public static final class Result {
+        private final long rows;
+        private final long bytes;
+        private final long nanos;
+
+        Result(long rows, long bytes, long nanos) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows, %.1f MB in %.1f s (%.0f rows/s)", rows, bytes / 1e6, getSeconds(),
+                    nanos == 0 ? 0 : rows * 1e9 / nanos);
+        }
+    }
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final int fetchSize;
+
+    public ResultExporter(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Creates an exporter for the given database URL, using -Djdbc.export.fetchSize if set.
+     */
+    public static ResultExporter forUrl(String url) {
+        int defaultFetchSize = url.startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 1000;
+        return new ResultExporter(Integer.getInteger("jdbc.export.fetchSize", defaultFetchSize));
+    }
+
+    /**
+     * Runs sql and writes every row to file, replacing the file if it exists. If the export
+     * fails, file is left untouched.
+     */
+    public Result export(Connection connection, String sql, Path file, Format format)
+            throws SQLException, IOException {
+        long start = System.nanoTime();
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".part");
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        Result result;
+        try (Statement stmt = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            stmt.setFetchSize(fetchSize);
+            ResultSet rs = stmt.executeQuery(sql);
+
+            ResultSetMetaData meta = rs.getMetaData();
+            int columns = meta.getColumnCount();
+            String[] labels = new String[columns];
+            boolean[] numeric = new boolean[columns];
+            for (int c = 0; c < columns; c++) {
+                labels[c] = meta.getColumnLabel(c + 1);
+                numeric[c] = isNumeric(meta.getColumnType(c + 1));
+            }
+
+            ChannelWriter out = new ChannelWriter(channel);
+            StringBuilder line = new StringBuilder(256);
+            if (format == Format.CSV) {
+                for (int c = 0; c < columns; c++) {
+                    if (c > 0) {
+                        line.append(',');
+                    }
+                    appendCsv(line, labels[c]);
+                }
+                line.append('\n');
+                out.write(line);
+            }
+
+            long rows = 0;
+            long lastReport = start;
+            while (rs.next()) {
+                line.setLength(0);
+                if (format == Format.CSV) {
+                    for (int c = 0; c < columns; c++) {
+                        if (c > 0) {
+                            line.append(',');
+                        }
+                        String value = rs.getString(c + 1);
+                        if (value != null) {
+                            appendCsv(line, value);
+                        }
+                    }
+                } else {
+                    line.append('{');
+                    for (int c = 0; c < columns; c++) {
+                        if (c > 0) {
+                            line.append(',');
+                        }
+                        appendJsonString(line, labels[c]);
+                        line.append(':');
+                        String value = rs.getString(c + 1);
+                        if (value == null) {
+                            line.append("null");
+                        } else if (numeric[c]) {
+                            line.append(isFinite(value) ? value : "null");
+                        } else {
+                            appendJsonString(line, value);
+                        }
+                    }
+                    line.append('}');
+                }
+                line.append('\n');
+                out.write(line);
+                rows++;
+
+                if ((rows & 1023) == 0) {
+                    long now = System.nanoTime();
+                    if (now - lastReport > PROGRESS_INTERVAL_NANOS) {
+                        lastReport = now;
+                        System.out.println("  " + new Result(rows, out.bytesWritten, now - start) + "...");
+                    }
+                }
+            }
+            out.flush();
+            rs.close();
+            result = new Result(rows, out.bytesWritten, System.nanoTime() - start);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            // Only reads happened, so there is nothing to keep
+            connection.rollback();
+            connection.setAutoCommit(autoCommit);
+        }
+
+        try {
+            moveIntoPlace(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return result;
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * False for the NaN and Infinity strings that FLOAT and DOUBLE columns can hold.
+     */
+    private static boolean isFinite(String number) {
+        return !number.equals("NaN") && !number.endsWith("Infinity");
+    }
+
+    private static boolean isNumeric(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void appendCsv(StringBuilder line, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        // Quote empty strings too, so they can be told apart from NULL
+        if (!quote && !value.isEmpty()) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') {
+                line.append('"');
+            }
+            line.append(ch);
+        }
+        line.append('"');
+    }
+
+    private static void appendJsonString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        line.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        line.append(ch);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * UTF-8 encodes text into one direct buffer and writes it to the channel when full.
+     */
+    private static final class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        long bytesWritten;
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(CharSequence text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, false);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    return;
+                } else {
+                    result.throwException();
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Brings a database schema up to date by applying numbered migrations in order, each
+ * exactly once.
+ *
+ * Applied migrations are recorded in a schema_version table, one row per schema name and
+ * version, with a checksum of the statements. On every start migrate() applies the
+ * migrations that have no row yet, in version order. It refuses to run if an applied
+ * migration has since been edited, or if a new migration is numbered below one that is
+ * already applied. Never change a migration once it has shipped; add a new one.
+ *
+ * Each migration runs in a transaction together with its schema_version row. MySQL
+ * commits implicitly after every DDL statement, so there a failed migration can leave its
+ * earlier statements applied; keep migrations small. Run one migrator per database at a
+ * time.
+ */
+public class SchemaMigrator {
+
+    /**
+     * One numbered step: a description and the SQL statements to run.
+     */
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+
+        public Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        long checksum() {
+            CRC32 crc = new CRC32();
+            for (String statement : statements) {
+                crc.update(statement.getBytes(StandardCharsets.UTF_8));
+                crc.update(0);
+            }
+            return crc.getValue();
+        }
+    }
+
+    private static final String CREATE_VERSION_TABLE =
+            "CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "schema_name VARCHAR(50) NOT NULL, " +
+                    "version INT NOT NULL, " +
+                    "description VARCHAR(200), " +
+                    "checksum BIGINT NOT NULL, " +
+                    "applied_at TIMESTAMP NOT NULL, " +
+                    "PRIMARY KEY (schema_name, version)" +
+                    ")";
+
+    private final String schema;
+    private final Migration[] migrations;
+
+    /**
+     * @param schema name this set of migrations is recorded under in schema_version
+     * @param migrations in strictly increasing version order, starting at 1
+     */
+    public SchemaMigrator(String schema, Migration... migrations) {
+        for (int i = 0; i < migrations.length; i++) {
+            if (migrations[i].version != i + 1) {
+                throw new IllegalArgumentException("Migration " + (i + 1) + " of " + schema + " has version "
+                        + migrations[i].version);
+            }
+        }
+        this.schema = schema;
+        this.migrations = migrations;
+    }
+
+    public int getLatestVersion() {
+        return migrations.length;
+    }
+
+    /**
+     * Applies every pending migration.
+     *
+     * @return the number of migrations applied
+     */
+    public int migrate(Connection connection) throws SQLException {
+        return migrate(connection, getLatestVersion());
+    }
+
+    /**
+     * Applies the pending migrations up to and including targetVersion.
+     *
+     * @return the number of migrations applied
+     */
+    public int migrate(Connection connection, int targetVersion) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(CREATE_VERSION_TABLE);
+        }
+        Map<Integer, Long> applied = readApplied(connection);
+
+        int highestApplied = 0;
+        for (int version : applied.keySet()) {
+            highestApplied = Math.max(highestApplied, version);
+        }
+
+        int count = 0;
+        for (Migration migration : migrations) {
+            Long checksum = applied.get(migration.version);
+            if (checksum != null) {
+                if (checksum != migration.checksum()) {
+                    throw new SQLException("Migration " + migration.version + " of " + schema
+                            + " was changed after it was applied: " + migration.description);
+                }
+            } else if (migration.version <= targetVersion) {
+                if (migration.version < highestApplied) {
+                    throw new SQLException("Migration " + migration.version + " of " + schema
+                            + " is older than the applied version " + highestApplied + ": " + migration.description);
+                }
+                apply(connection, migration);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The highest applied version, or 0 for a database this migrator has never seen.
+     */
+    public int getCurrentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(CREATE_VERSION_TABLE);
+        }
+        int current = 0;
+        for (int version : readApplied(connection).keySet()) {
+            current = Math.max(current, version);
+        }
+        return current;
+    }
+
+    private Map<Integer, Long> readApplied(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT version, checksum FROM schema_version WHERE schema_name = ?")) {
+            pstmt.setString(1, schema);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+            rs.close();
+        }
+        return applied;
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                for (String statement : migration.statements) {
+                    stmt.execute(statement);
+                }
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "INSERT INTO schema_version (schema_name, version, description, checksum, applied_at) " +
+                            "VALUES (?, ?, ?, ?, ?)")) {
+                pstmt.setString(1, schema);
+                pstmt.setInt(2, migration.version);
+                pstmt.setString(3, migration.description);
+                pstmt.setLong(4, migration.checksum());
+                pstmt.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+                pstmt.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration " + migration.version + " of " + schema + " failed ("
+                    + migration.description + "): " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        System.out.printf("Applied %s migration %d: %s (%.0f ms)%n", schema, migration.version,
+                migration.description, (System.nanoTime() - start) / 1e6);
+    }
+}
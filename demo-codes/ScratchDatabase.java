@@ -0,0 +1,120 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * The empty database that IndexBenchmark, BookAuthorBenchmark and LoadTest create their
+ * tables in, seed and measure.
+ *
+ * open() connects to -Djdbc.url (default jdbc:mysql://localhost:3308/library_bench) and
+ * refuses to continue if any library or students table already exists, so a run never
+ * touches real data. close() drops every one of those tables and their schema_version
+ * rows, then closes the pool:
+ *
+ * <pre>
+ * try (ScratchDatabase db = ScratchDatabase.open()) {
+ *     if (db == null) {
+ *         return;   // not empty; open() has said so
+ *     }
+ *     ...
+ * }
+ * </pre>
+ */
+public final class ScratchDatabase implements AutoCloseable {
+
+    private static final String[] TABLES = {"BooksAuthors", "Books", "Authors", "Publishers", "students"};
+
+    /**
+     * Inserts the rows from to to (inclusive) on one connection with auto-commit off.
+     */
+    public interface Chunk {
+        void insert(Connection connection, int from, int to) throws SQLException;
+    }
+
+    private final String url;
+    private final ConnectionPool pool;
+
+    private ScratchDatabase(String url, ConnectionPool pool) {
+        this.url = url;
+        this.pool = pool;
+    }
+
+    /**
+     * Connects to the database given by the jdbc.url, jdbc.user and jdbc.password system
+     * properties. Returns null, after printing why, if it is not empty.
+     */
+    public static ScratchDatabase open() throws SQLException {
+        String url = System.getProperty("jdbc.url", "jdbc:mysql://localhost:3308/library_bench");
+        ConnectionPool pool = ConnectionPool.create(url, System.getProperty("jdbc.user", "root"),
+                System.getProperty("jdbc.password", ""));
+        try (Connection connection = pool.getConnection()) {
+            for (String table : TABLES) {
+                if (tableExists(connection, table)) {
+                    System.out.println(table + " already exists at " + url + "; use an empty database.");
+                    pool.close();
+                    return null;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            pool.close();
+            throw e;
+        }
+        return new ScratchDatabase(url, pool);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Calls chunk for rows 1 to rows in ranges of chunkSize rows, each on its own
+     * connection, so that none is held long enough to look like a leak.
+     */
+    public void inChunks(int rows, int chunkSize, Chunk chunk) throws SQLException {
+        for (int from = 1; from <= rows; from += chunkSize) {
+            int to = Math.min(rows, from + chunkSize - 1);
+            try (Connection connection = pool.getConnection()) {
+                connection.setAutoCommit(false);
+                chunk.insert(connection, from, to);
+            }
+        }
+    }
+
+    /**
+     * Drops every table a run may have created, then closes the pool.
+     */
+    @Override
+    public void close() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement stmt = connection.createStatement()) {
+            for (String table : TABLES) {
+                stmt.execute("DROP TABLE IF EXISTS " + table);
+            }
+            if (tableExists(connection, "schema_version")) {
+                stmt.execute("DELETE FROM schema_version WHERE schema_name IN ('library', 'students')");
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    public static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static boolean tableExists(Connection connection, String table) {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeQuery("SELECT 1 FROM " + table + " WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
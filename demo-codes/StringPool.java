@@ -0,0 +1,56 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates strings read from the database, so a name that appears in ten thousand
+ * rows is stored once.
+ *
+ * The pool holds at most maxSize distinct strings. When it is full, adding a string drops
+ * the one looked up least recently, so a long-lived pool keeps sharing the strings that
+ * are still being read instead of only the first maxSize it ever saw. Safe to share
+ * between background readers.
+ */
+public class StringPool {
+
+    private final Map<String, String> strings;
+    private long lookups;
+    private long hits;
+
+    public StringPool(final int maxSize) {
+        // Access order turns the LinkedHashMap into an LRU list
+        this.strings = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the pooled instance equal to s, adding s if it is new. Null stays null.
+     */
+    public synchronized String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        lookups++;
+        String pooled = strings.get(s);
+        if (pooled != null) {
+            hits++;
+            return pooled;
+        }
+        strings.put(s, s);
+        return s;
+    }
+
+    public synchronized int size() {
+        return strings.size();
+    }
+
+    /**
+     * Fraction of lookups that found an existing string, between 0 and 1.
+     */
+    public synchronized double getHitRate() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
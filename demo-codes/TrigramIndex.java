@@ -0,0 +1,332 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted trigram index over one text column, for substring and prefix search
+ * without a LIKE '%...%' table scan.
+ *
+ * Every text is lower-cased and split into overlapping three-character pieces
+ * ("smith" gives "smi", "mit", "ith"), plus one piece marking the start of the text, so
+ * prefix searches only look at texts that begin the right way. For each trigram the index
+ * keeps a sorted array of the ids whose text contains it. A search intersects the lists
+ * for the query's trigrams, starting with the shortest. It then checks the remaining
+ * candidates against the stored text, so results are exact. Substring queries shorter
+ * than three characters have no trigrams and are answered by scanning the stored texts,
+ * which is still in memory.
+ *
+ * Keep the index current by calling put() and remove() after each committed insert,
+ * update or delete. reconcile() compares the index with the database and repairs any
+ * differences, e.g. after a bulk import or changes made outside the application.
+ *
+ * Safe for concurrent use: searches share a read lock and updates take a write lock.
+ */
+public class TrigramIndex {
+
+    // Put before the text when indexing, and before prefix queries
+    private static final char START = '\u0002';
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Builds an index from a query returning (id, text) rows.
+     */
+    public static TrigramIndex load(Connection connection, String sql) throws SQLException {
+        TrigramIndex index = new TrigramIndex();
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next()) {
+                index.put(rs.getInt(1), rs.getString(2));
+            }
+            rs.close();
+        }
+        return index;
+    }
+
+    /**
+     * Adds or replaces the text for id. A null text removes it.
+     */
+    public void put(int id, String text) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (text == null) {
+                return;
+            }
+            Entry entry = new Entry(text);
+            entries.put(id, entry);
+            for (long trigram : trigrams(START + entry.normalized)) {
+                postings.computeIfAbsent(trigram, t -> new Postings()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids whose text contains query, ignoring case, in ascending order.
+     */
+    public int[] search(String query) {
+        String normalized = normalize(query);
+        return find(normalized, normalized, false);
+    }
+
+    /**
+     * Ids whose text starts with query, ignoring case, in ascending order.
+     */
+    public int[] searchPrefix(String query) {
+        String normalized = normalize(query);
+        return find(normalized, START + normalized, true);
+    }
+
+    public String getText(int id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry == null ? null : entry.text;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compares the index with a query returning (id, text) rows, and fixes every entry
+     * that is missing, stale or no longer in the database.
+     *
+     * @return the number of entries that had to be fixed; 0 means the index was consistent
+     */
+    public int reconcile(Connection connection, String sql) throws SQLException {
+        Set<Integer> seen = new HashSet<>();
+        int fixed = 0;
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                String text = rs.getString(2);
+                seen.add(id);
+                String indexed = getText(id);
+                if (indexed == null ? text != null : !indexed.equals(text)) {
+                    put(id, text);
+                    fixed++;
+                }
+            }
+            rs.close();
+        }
+
+        List<Integer> gone = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Integer id : entries.keySet()) {
+                if (!seen.contains(id)) {
+                    gone.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int id : gone) {
+            remove(id);
+        }
+        return fixed + gone.size();
+    }
+
+    /**
+     * @param query the normalized query, checked against each candidate
+     * @param indexed the text whose trigrams select the candidates
+     */
+    private int[] find(String query, String indexed, boolean prefix) {
+        lock.readLock().lock();
+        try {
+            long[] grams = trigrams(indexed);
+            if (grams.length == 0) {
+                // Too short for trigrams; check every text
+                int[] all = new int[entries.size()];
+                int n = 0;
+                for (int id : entries.keySet()) {
+                    all[n++] = id;
+                }
+                int count = verify(all, n, query, prefix);
+                Arrays.sort(all, 0, count);
+                return Arrays.copyOf(all, count);
+            }
+
+            // Intersect from the rarest trigram, so the candidate list starts small
+            Postings[] lists = new Postings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(grams[i]);
+                if (lists[i] == null) {
+                    return new int[0];
+                }
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+            int[] candidates = Arrays.copyOf(lists[0].ids, lists[0].size);
+            int count = candidates.length;
+            for (int i = 1; i < lists.length && count > 0; i++) {
+                count = lists[i].retainAll(candidates, count);
+            }
+
+            // Trigrams can match out of order ("abcab" vs "cabc"); check the real text
+            count = verify(candidates, count, query, prefix);
+            return Arrays.copyOf(candidates, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keeps the first count ids whose text matches query, compacting them to the front,
+     * and returns how many remain.
+     */
+    private int verify(int[] ids, int count, String query, boolean prefix) {
+        int kept = 0;
+        for (int j = 0; j < count; j++) {
+            String text = entries.get(ids[j]).normalized;
+            if (prefix ? text.startsWith(query) : text.contains(query)) {
+                ids[kept++] = ids[j];
+            }
+        }
+        return kept;
+    }
+
+    private void removeLocked(int id) {
+        Entry old = entries.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (long trigram : trigrams(START + old.normalized)) {
+            Postings list = postings.get(trigram);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Distinct trigrams of text, each packed into a long as three 16-bit chars.
+     */
+    private static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static final class Entry {
+        final String text;
+        final String normalized;
+
+        Entry(String text) {
+            this.text = text;
+            this.normalized = normalize(text);
+        }
+    }
+
+    /**
+     * Sorted, growable list of ids. Ids usually arrive in increasing order, so add() is
+     * normally an append.
+     */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * Keeps the first count sorted candidates that are also in this list, compacting
+         * them to the front, and returns how many remain.
+         */
+        int retainAll(int[] candidates, int count) {
+            int kept = 0;
+            if (size > count * 16) {
+                // Much longer than the candidates: look each one up
+                for (int j = 0; j < count; j++) {
+                    if (Arrays.binarySearch(ids, 0, size, candidates[j]) >= 0) {
+                        candidates[kept++] = candidates[j];
+                    }
+                }
+                return kept;
+            }
+            int i = 0;
+            for (int j = 0; j < count && i < size; ) {
+                if (ids[i] < candidates[j]) {
+                    i++;
+                } else if (ids[i] > candidates[j]) {
+                    j++;
+                } else {
+                    candidates[kept++] = candidates[j];
+                    i++;
+                    j++;
+                }
+            }
+            return kept;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group of dependent SQL statements that run in one transaction with a single commit:
+ * either all of them take effect or none do.
+ *
+ * Statements are collected with add() and addIn(), then run in order by execute().
+ * Consecutive statements with the same SQL run as one JDBC batch. Whether a batch costs
+ * one round trip depends on the driver: MySQL Connector/J sends each statement of a batch
+ * separately unless the URL sets rewriteBatchedStatements=true (see
+ * CsvBulkImporter.withBatchRewriting()). addIn() keeps the statement count low either
+ * way: it splits a list of ids into IN (...) lists of up to IN_LIST_SIZE ids each, so
+ * deleting 10,000 rows takes 20 statements instead of 10,000.
+ *
+ * <pre>
+ * UnitOfWork work = new UnitOfWork();
+ * work.add("DELETE FROM BooksAuthors WHERE book_id = ?", bookId);
+ * work.add("DELETE FROM Books WHERE book_id = ?", bookId);
+ * int[] counts = work.execute(connection);   // counts[1] is the number of books deleted
+ * </pre>
+ *
+ * A UnitOfWork is not thread-safe. It can be executed again, e.g. to retry after a
+ * deadlock.
+ */
+public class UnitOfWork {
+
+    public static final int IN_LIST_SIZE = 500;
+
+    /**
+     * One statement run with one set of parameters, counted under the add() call that made it.
+     */
+    private static final class Step {
+        final int call;
+        final String sql;
+        final Object[] params;
+
+        Step(int call, String sql, Object[] params) {
+            this.call = call;
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private int calls;
+
+    /**
+     * Adds a statement with its parameters, bound with setObject() in order.
+     */
+    public UnitOfWork add(String sql, Object... params) {
+        steps.add(new Step(calls++, sql, params));
+        return this;
+    }
+
+    /**
+     * Adds statements that apply to every id, in IN lists of up to IN_LIST_SIZE ids.
+     *
+     * @param sqlBeforeInList the statement up to and including IN, e.g.
+     *                        "DELETE FROM Books WHERE book_id IN"
+     */
+    public UnitOfWork addIn(String sqlBeforeInList, int[] ids) {
+        int call = calls++;
+        for (int from = 0; from < ids.length; from += IN_LIST_SIZE) {
+            int to = Math.min(ids.length, from + IN_LIST_SIZE);
+            StringBuilder sql = new StringBuilder(sqlBeforeInList).append(" (?");
+            for (int i = from + 1; i < to; i++) {
+                sql.append(", ?");
+            }
+            sql.append(')');
+
+            Object[] params = new Object[to - from];
+            for (int i = from; i < to; i++) {
+                params[i - from] = ids[i];
+            }
+            steps.add(new Step(call, sql.toString(), params));
+        }
+        return this;
+    }
+
+    /**
+     * Runs every statement in one transaction and commits once. On any failure the
+     * transaction is rolled back and the exception is rethrown. The connection's
+     * auto-commit setting is restored either way.
+     *
+     * @return the number of rows changed by each add() or addIn() call, in call order
+     */
+    public int[] execute(Connection connection) throws SQLException {
+        int[] counts = new int[calls];
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int start = 0;
+            while (start < steps.size()) {
+                // Run consecutive steps with the same SQL as one batch
+                String sql = steps.get(start).sql;
+                int end = start + 1;
+                while (end < steps.size() && steps.get(end).sql.equals(sql)) {
+                    end++;
+                }
+                runGroup(connection, sql, start, end, counts);
+                start = end;
+            }
+            connection.commit();
+            return counts;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void runGroup(Connection connection, String sql, int start, int end, int[] counts) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            if (end - start == 1) {
+                bind(pstmt, steps.get(start).params);
+                counts[steps.get(start).call] += pstmt.executeUpdate();
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                bind(pstmt, steps.get(i).params);
+                pstmt.addBatch();
+            }
+            int[] batchCounts = pstmt.executeBatch();
+            for (int i = 0; i < batchCounts.length; i++) {
+                // SUCCESS_NO_INFO (-2) means the driver does not know; count nothing for it
+                counts[steps.get(start + i).call] += Math.max(0, batchCounts[i]);
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            pstmt.setObject(i + 1, params[i]);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An UPDATE of one row that writes only the columns that changed, and only if nobody else
+ * has changed the row since it was read (optimistic locking).
+ *
+ * The table needs an integer version column that every update increments. The caller keeps
+ * the row as it was read, including its version, and passes each column's old and new
+ * value to set(); unchanged columns are dropped. execute() then runs
+ *
+ *   UPDATE table SET changed columns..., version = version + 1 WHERE key = ? AND version = ?
+ *
+ * If another user updated or deleted the row in the meantime, the version no longer
+ * matches, nothing is written and execute() returns false. No lock is held while the user
+ * edits; the conflict is found when writing, and the caller decides what to do, typically
+ * show the current row and let the user save again.
+ *
+ * <pre>
+ * VersionedUpdate update = new VersionedUpdate("Authors", "author_id", authorId, version)
+ *         .set("first_name", oldFirstName, firstName)
+ *         .set("last_name", oldLastName, lastName);
+ * if (!update.isEmpty() &amp;&amp; !update.execute(connection)) {
+ *     // changed by someone else
+ * }
+ * </pre>
+ */
+public class VersionedUpdate {
+
+    private final String table;
+    private final String keyColumn;
+    private final int key;
+    private final int version;
+    private final List<String> columns = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+
+    /**
+     * @param version the version of the row when it was read
+     */
+    public VersionedUpdate(String table, String keyColumn, int key, int version) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.key = key;
+        this.version = version;
+    }
+
+    /**
+     * Writes newValue to column if it differs from oldValue, the value that was read.
+     */
+    public VersionedUpdate set(String column, Object oldValue, Object newValue) {
+        if (!same(oldValue, newValue)) {
+            columns.add(column);
+            values.add(newValue);
+        }
+        return this;
+    }
+
+    /**
+     * True if no column changed, so there is nothing to write.
+     */
+    public boolean isEmpty() {
+        return columns.isEmpty();
+    }
+
+    public List<String> getChangedColumns() {
+        return new ArrayList<>(columns);
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    /**
+     * Writes the changed columns and increments the version.
+     *
+     * @return true if the row was updated; false if it was changed or deleted since it was read
+     */
+    public boolean execute(Connection connection) throws SQLException {
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("No column of " + table + " " + key + " was changed");
+        }
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (String column : columns) {
+            sql.append(column).append(" = ?, ");
+        }
+        sql.append("version = version + 1 WHERE ").append(keyColumn).append(" = ? AND version = ?");
+
+        try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (Object value : values) {
+                pstmt.setObject(index++, value);
+            }
+            pstmt.setInt(index++, key);
+            pstmt.setInt(index, version);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    private static boolean same(Object a, Object b) {
+        // Drivers may return an INT column as Integer or Long
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).longValue() == ((Number) b).longValue();
+        }
+        return Objects.equals(a, b);
+    }
+}
@@ -0,0 +1,176 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audits a sample of price calculations without blocking the calling thread.
+ *
+ * Calls are written into a fixed-size ring buffer of primitive slots and a
+ * background thread prints them. The pricing threads never take a lock and
+ * never allocate: if the buffer is full the entry is dropped and counted.
+ */
+public class AsyncPriceAuditor implements PriceAuditor, AutoCloseable {
+
+    private final double sampleRate;
+    private final PrintStream out;
+
+    // Ring buffer slots; sequences[i] tells producers and the consumer who owns slot i
+    private final int mask;
+    private final double[] costPrices;
+    private final double[] discountAmounts;
+    private final double[] sellingPrices;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long head;
+
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity   number of entries the buffer can hold, rounded up to a power of two
+     * @param sampleRate fraction of calls to record, from 0.0 (none) to 1.0 (all)
+     * @param out        where the drained entries are printed
+     */
+    public AsyncPriceAuditor(int capacity, double sampleRate, PrintStream out) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (sampleRate < 0.0 || sampleRate > 1.0) {
+            throw new IllegalArgumentException("Sample rate must be between 0.0 and 1.0: " + sampleRate);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.sampleRate = sampleRate;
+        this.out = out;
+        this.mask = size - 1;
+        this.costPrices = new double[size];
+        this.discountAmounts = new double[size];
+        this.sellingPrices = new double[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+
+        drainer = new Thread(this::drainLoop, "price-audit-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Creates an auditor from the price.audit.sampleRate and price.audit.capacity
+     * system properties, or DISABLED when the sample rate is 0.
+     */
+    public static PriceAuditor fromSystemProperties(double defaultSampleRate) {
+        double sampleRate = Double.parseDouble(
+                System.getProperty("price.audit.sampleRate", Double.toString(defaultSampleRate)));
+        int capacity = Integer.getInteger("price.audit.capacity", 8192);
+
+        if (sampleRate <= 0.0) {
+            return PriceAuditor.DISABLED;
+        }
+        return new AsyncPriceAuditor(capacity, sampleRate, System.out);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return running;
+    }
+
+    @Override
+    public void record(double costPrice, double discountAmount, double sellingPrice) {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (available < 0) {
+                // Buffer is full; never make the pricing thread wait for the console
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+
+        costPrices[index] = costPrice;
+        discountAmounts[index] = discountAmount;
+        sellingPrices[index] = sellingPrice;
+        sequences.lazySet(index, position + 1);
+    }
+
+    /**
+     * Number of sampled entries dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+        // Print whatever was recorded before close()
+        drain();
+    }
+
+    private int drain() {
+        int drained = 0;
+        StringBuilder line = new StringBuilder(96);
+
+        while (true) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                return drained;
+            }
+
+            line.setLength(0);
+            line.append("Server calculated price: Cost Price: Rs. ").append(costPrices[index])
+                    .append(", Discount Amount: Rs. ").append(discountAmounts[index])
+                    .append(", Selling Price: Rs. ").append(sellingPrices[index]);
+
+            // Hand the slot back to producers before doing the slow console write
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            drained++;
+
+            out.println(line);
+        }
+    }
+
+    /**
+     * Stops the background thread after printing the entries already recorded.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long droppedCount = dropped.get();
+        if (droppedCount > 0) {
+            out.println("Price audit dropped " + droppedCount + " entries because the buffer was full");
+        }
+    }
+}
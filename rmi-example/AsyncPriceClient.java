@@ -0,0 +1,110 @@
+package org.example;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs remote price calculations on a small, bounded pool of worker threads so
+ * that callers such as the Swing Event Dispatch Thread never wait on the network.
+ */
+public class AsyncPriceClient implements AutoCloseable {
+
+    private final PriceCalculator calculator;
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    // The most recent call made through calculateLatest, cancelled when a newer one arrives
+    private final AtomicReference<CompletableFuture<Double>> latest = new AtomicReference<>();
+
+    /**
+     * @param calculator    the remote (or local) calculator to call
+     * @param threads       maximum number of calls running at the same time
+     * @param queueCapacity maximum number of calls waiting for a thread; further calls fail fast
+     * @param timeoutMillis how long a single call may take before it fails with a TimeoutException
+     */
+    public AsyncPriceClient(PriceCalculator calculator, int threads, int queueCapacity, long timeoutMillis) {
+        this.calculator = calculator;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "price-client-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public AsyncPriceClient(PriceCalculator calculator) {
+        this(calculator, 4, 64, Long.getLong("price.client.timeoutMillis", 5000L));
+    }
+
+    /**
+     * Calculates a selling price in the background.
+     * The future fails with a TimeoutException if the server does not answer in time.
+     */
+    public CompletableFuture<Double> calculateSellingPrice(double costPrice, double discountAmount) {
+        CompletableFuture<Double> result = new CompletableFuture<>();
+
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    result.complete(calculator.calculateSellingPrice(costPrice, discountAmount));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        // Cancelling removes a call that is still queued. A blocking RMI call ignores the
+        // interrupt, so one already waiting on the server holds its thread until the socket
+        // read timeout (see TunedSocketFactory) or the binary client's own timeout
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((sellingPrice, error) -> {
+                    if (error != null) {
+                        task.cancel(true);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Like calculateSellingPrice, but cancels the previous call made through this
+     * method if it has not finished yet. Use it when new input makes older results useless.
+     */
+    public CompletableFuture<Double> calculateLatest(double costPrice, double discountAmount) {
+        CompletableFuture<Double> result = calculateSellingPrice(costPrice, discountAmount);
+        CompletableFuture<Double> previous = latest.getAndSet(result);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+        return result;
+    }
+
+    /**
+     * True if the error only means that the call was superseded or cancelled.
+     */
+    public static boolean isCancellation(Throwable error) {
+        return error instanceof CancellationException
+                || error.getCause() instanceof CancellationException;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,324 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PriceCalculator that talks to a BinaryPriceServer instead of going through RMI.
+ *
+ * Many threads can share one instance. Each call is written as a frame with its own
+ * request id and the calling thread waits only for its own response, so calls from
+ * different threads are pipelined over the single connection. Failures are reported
+ * as RemoteException, just like the RMI stub.
+ *
+ * The constructor tries to connect once. If that fails, or the connection is lost later,
+ * a background thread reconnects with backoff, as LoadBalancedPriceCalculator does for
+ * its lookups. Calls made while there is no connection fail at once instead of waiting.
+ */
+public class BinaryPriceCalculator implements PriceCalculator, AutoCloseable {
+
+    private static final long MIN_RETRY_MILLIS = 250;
+    private static final long MAX_RETRY_MILLIS = 10_000;
+
+    private final String host;
+    private final int port;
+    private final long timeoutMillis;
+
+    private final Object writeLock = new Object();
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final ScheduledExecutorService connectExecutor;
+    // null while disconnected
+    private volatile Link link;
+    private long retryMillis = MIN_RETRY_MILLIS;
+    private volatile boolean closed;
+
+    /**
+     * One connection with the calls waiting for a response on it.
+     */
+    private static final class Link {
+        final SocketChannel channel;
+        final Map<Integer, CompletableFuture<double[]>> pending = new ConcurrentHashMap<>();
+        volatile IOException failure;
+
+        Link(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public BinaryPriceCalculator(String host, int port, long timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+
+        connectExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "binary-price-connect-" + host + ":" + port);
+            thread.setDaemon(true);
+            return thread;
+        });
+        connect();
+    }
+
+    /**
+     * Connects to the server given by the price.binary.server system property
+     * (host:port, default localhost:1199) with a timeout of price.client.timeoutMillis.
+     */
+    public static BinaryPriceCalculator fromSystemProperties() {
+        String server = System.getProperty("price.binary.server", "localhost:1199");
+        int colon = server.lastIndexOf(':');
+        return new BinaryPriceCalculator(server.substring(0, colon), Integer.parseInt(server.substring(colon + 1)),
+                Long.getLong("price.client.timeoutMillis", 5000L));
+    }
+
+    /**
+     * True while connected to the server.
+     */
+    public boolean isConnected() {
+        return link != null;
+    }
+
+    @Override
+    public double calculateSellingPrice(double costPrice, double discountAmount) throws RemoteException {
+        Link link = currentLink();
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<double[]> response = register(link, requestId);
+
+        synchronized (writeLock) {
+            ByteBuffer buffer = writeBuffer(BinaryPriceServer.HEADER_BYTES + 16);
+            buffer.putInt(requestId).put(BinaryPriceServer.OP_SINGLE).putInt(1)
+                    .putDouble(costPrice).putDouble(discountAmount);
+            send(link, requestId, buffer);
+        }
+        return await(link, requestId, response)[0];
+    }
+
+    @Override
+    public double[] calculateSellingPrices(double[] costPrices, double[] discountAmounts) throws RemoteException {
+        if (costPrices.length != discountAmounts.length) {
+            throw new IllegalArgumentException("Cost prices and discount amounts must have the same length: "
+                    + costPrices.length + " != " + discountAmounts.length);
+        }
+        if (costPrices.length > BinaryPriceServer.MAX_ITEMS) {
+            throw new IllegalArgumentException("At most " + BinaryPriceServer.MAX_ITEMS + " prices per batch");
+        }
+
+        Link link = currentLink();
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<double[]> response = register(link, requestId);
+
+        synchronized (writeLock) {
+            ByteBuffer buffer = writeBuffer(BinaryPriceServer.HEADER_BYTES + costPrices.length * 16);
+            buffer.putInt(requestId).put(BinaryPriceServer.OP_BATCH).putInt(costPrices.length);
+            for (int i = 0; i < costPrices.length; i++) {
+                buffer.putDouble(costPrices[i]).putDouble(discountAmounts[i]);
+            }
+            send(link, requestId, buffer);
+        }
+        return await(link, requestId, response);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        connectExecutor.shutdownNow();
+        Link current = link;
+        if (current != null) {
+            current.channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryPriceCalculator[" + host + ":" + port + (link != null ? " up" : " down") + "]";
+    }
+
+    private Link currentLink() throws RemoteException {
+        Link current = link;
+        if (current == null) {
+            throw new RemoteException("Not connected to binary price server " + host + ":" + port
+                    + (closed ? "" : "; reconnecting"));
+        }
+        return current;
+    }
+
+    private CompletableFuture<double[]> register(Link link, int requestId) throws RemoteException {
+        CompletableFuture<double[]> response = new CompletableFuture<>();
+        link.pending.put(requestId, response);
+
+        // The reader may have failed before the put
+        if (link.failure != null && link.pending.remove(requestId) != null) {
+            throw new RemoteException("Connection to binary price server was lost", link.failure);
+        }
+        return response;
+    }
+
+    // Must be called while holding writeLock
+    private ByteBuffer writeBuffer(int bytes) {
+        if (writeBuffer.capacity() < bytes) {
+            writeBuffer = ByteBuffer.allocateDirect(bytes);
+        }
+        writeBuffer.clear();
+        return writeBuffer;
+    }
+
+    // Must be called while holding writeLock
+    private void send(Link link, int requestId, ByteBuffer buffer) throws RemoteException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                link.channel.write(buffer);
+            }
+        } catch (IOException e) {
+            link.pending.remove(requestId);
+            disconnected(link, e);
+            throw new RemoteException("Could not send request to binary price server", e);
+        }
+    }
+
+    private double[] await(Link link, int requestId, CompletableFuture<double[]> response) throws RemoteException {
+        try {
+            return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            link.pending.remove(requestId);
+            throw new RemoteException("Binary price server did not respond within " + timeoutMillis + " ms", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RemoteException
+                    ? (RemoteException) e.getCause()
+                    : new RemoteException("Binary price call failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            link.pending.remove(requestId);
+            throw new RemoteException("Interrupted while waiting for binary price server", e);
+        }
+    }
+
+    private void connect() {
+        if (closed) {
+            return;
+        }
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            // Back off so a server that is down is not hammered with connection attempts
+            long delay;
+            synchronized (this) {
+                delay = retryMillis;
+                retryMillis = Math.min(delay * 2, MAX_RETRY_MILLIS);
+            }
+            scheduleConnect(delay);
+            return;
+        }
+
+        Link connected = new Link(channel);
+        Thread reader = new Thread(() -> readLoop(connected), "binary-price-client-" + host + ":" + port);
+        reader.setDaemon(true);
+        synchronized (this) {
+            retryMillis = MIN_RETRY_MILLIS;
+            link = connected;
+        }
+        reader.start();
+        if (closed) {
+            closeQuietly(channel);
+        }
+    }
+
+    private void scheduleConnect(long delayMillis) {
+        if (closed || connectExecutor.isShutdown()) {
+            return;
+        }
+        connectExecutor.schedule(this::connect, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Called by whichever thread first sees the connection fail
+    private void disconnected(Link failed, IOException e) {
+        synchronized (this) {
+            if (failed.failure != null) {
+                return;
+            }
+            failed.failure = e;
+            if (link == failed) {
+                link = null;
+            }
+        }
+        closeQuietly(failed.channel);
+
+        // Fail every call still waiting so no caller hangs until its timeout
+        RemoteException lost = new RemoteException("Connection to binary price server was lost", e);
+        for (Integer requestId : failed.pending.keySet()) {
+            CompletableFuture<double[]> response = failed.pending.remove(requestId);
+            if (response != null) {
+                response.completeExceptionally(lost);
+            }
+        }
+
+        if (!closed) {
+            System.err.println("Lost connection to binary price server " + host + ":" + port + ", reconnecting: " + e);
+            scheduleConnect(0);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more to do with it
+        }
+    }
+
+    private void readLoop(Link link) {
+        Map<Integer, CompletableFuture<double[]>> pending = link.pending;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(link.channel), 64 * 1024))) {
+            while (true) {
+                int requestId = in.readInt();
+                byte status = in.readByte();
+                int count = in.readInt();
+
+                if (status == BinaryPriceServer.STATUS_OK) {
+                    double[] sellingPrices = new double[count];
+                    for (int i = 0; i < count; i++) {
+                        sellingPrices[i] = in.readDouble();
+                    }
+                    CompletableFuture<double[]> response = pending.remove(requestId);
+                    if (response != null) {
+                        response.complete(sellingPrices);
+                    }
+                } else {
+                    byte[] message = new byte[count];
+                    in.readFully(message);
+                    CompletableFuture<double[]> response = pending.remove(requestId);
+                    if (response != null) {
+                        response.completeExceptionally(new RemoteException(
+                                "Binary price server error: " + new String(message, StandardCharsets.UTF_8)));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            disconnected(link, e);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Serves the PriceCalculator contract over a compact binary protocol instead of RMI.
+ *
+ * Every message is a fixed-width frame, all numbers big-endian:
+ *
+ *   request:  int requestId, byte operation, int count, count x (double costPrice, double discountAmount)
+ *   response: int requestId, byte status,    int count, count x double sellingPrice
+ *
+ * operation is OP_SINGLE (count is always 1) or OP_BATCH. A response with STATUS_ERROR
+ * carries count bytes of UTF-8 error message instead of prices. Clients may send many
+ * requests without waiting (pipelining); responses on one connection come back in
+ * request order and carry the request id, so a client can match them up.
+ *
+ * One selector thread handles all connections. Pricing is cheap enough to run on that
+ * thread directly.
+ */
+public class BinaryPriceServer implements AutoCloseable {
+
+    static final byte OP_SINGLE = 1;
+    static final byte OP_BATCH = 2;
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    static final int HEADER_BYTES = 9;
+    static final int MAX_ITEMS = 1 << 20;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final PriceCalculator calculator;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+
+    /**
+     * @param calculator local calculator that does the pricing
+     * @param port       port to listen on, or 0 for any free port
+     */
+    public BinaryPriceServer(PriceCalculator calculator, int port) throws IOException {
+        this.calculator = calculator;
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        selectorThread = new Thread(this::selectLoop, "binary-price-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Binary price server error: " + e);
+                }
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            SocketChannel channel = serverChannel.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+            }
+            return;
+        }
+
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && (key.isWritable() || connection.out.position() > 0)) {
+                connection.flush(key);
+            }
+        } catch (IOException e) {
+            // The client went away; drop only this connection
+            key.cancel();
+            connection.channel.close();
+        }
+    }
+
+    private final class Connection {
+        final SocketChannel channel;
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                throw new IOException("Connection closed by client");
+            }
+
+            in.flip();
+            // Answer every complete frame that has arrived; keep partial frames for the next read
+            while (in.remaining() >= HEADER_BYTES) {
+                int start = in.position();
+                int count = in.getInt(start + 5);
+                if (count < 0 || count > MAX_ITEMS) {
+                    throw new IOException("Invalid item count: " + count);
+                }
+
+                int frameBytes = HEADER_BYTES + count * 16;
+                if (in.remaining() < frameBytes) {
+                    if (frameBytes > in.capacity()) {
+                        in = grow(in, frameBytes);
+                        in.flip();
+                    }
+                    break;
+                }
+                process(in.getInt(), in.get(), in.getInt());
+            }
+            in.compact();
+        }
+
+        private void process(int requestId, byte operation, int count) {
+            try {
+                if (operation == OP_SINGLE && count == 1) {
+                    double sellingPrice = calculator.calculateSellingPrice(in.getDouble(), in.getDouble());
+                    reserve(HEADER_BYTES + 8);
+                    out.putInt(requestId).put(STATUS_OK).putInt(1).putDouble(sellingPrice);
+                } else if (operation == OP_BATCH) {
+                    double[] costPrices = new double[count];
+                    double[] discountAmounts = new double[count];
+                    for (int i = 0; i < count; i++) {
+                        costPrices[i] = in.getDouble();
+                        discountAmounts[i] = in.getDouble();
+                    }
+                    double[] sellingPrices = calculator.calculateSellingPrices(costPrices, discountAmounts);
+                    reserve(HEADER_BYTES + sellingPrices.length * 8);
+                    out.putInt(requestId).put(STATUS_OK).putInt(sellingPrices.length);
+                    for (double sellingPrice : sellingPrices) {
+                        out.putDouble(sellingPrice);
+                    }
+                } else {
+                    in.position(in.position() + count * 16);
+                    writeError(requestId, "Unknown operation " + operation + " with " + count + " items");
+                }
+            } catch (Exception e) {
+                writeError(requestId, String.valueOf(e.getMessage()));
+            }
+        }
+
+        private void writeError(int requestId, String message) {
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            reserve(HEADER_BYTES + bytes.length);
+            out.putInt(requestId).put(STATUS_ERROR).putInt(bytes.length).put(bytes);
+        }
+
+        private void reserve(int bytes) {
+            if (out.remaining() < bytes) {
+                out.flip();
+                out = grow(out, out.remaining() + bytes);
+            }
+        }
+
+        void flush(SelectionKey key) throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+
+            // Only ask for write readiness while the socket cannot take everything
+            if (out.position() > 0) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    // Copies the unread bytes of buffer (in read mode) into a larger buffer left in write mode
+    private static ByteBuffer grow(ByteBuffer buffer, int minCapacity) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(minCapacity, buffer.capacity() * 2));
+        larger.put(buffer);
+        return larger;
+    }
+}
@@ -0,0 +1,295 @@
+package org.example;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PriceCalculator decorator that remembers recent results on the client so that
+ * repeated (cost price, discount) pairs do not pay for another remote call.
+ *
+ * The cache is a fixed-size, two-way set-associative table stored in primitive
+ * arrays, so lookups never box the key. Entries expire after a time-to-live and
+ * the least recently used entry of a full set is evicted.
+ *
+ * Each set has a generation that invalidate() and invalidateAll() increment. A miss notes
+ * the generation before calling the server, and the reply is only cached if it has not
+ * changed, so a price invalidated during the call is not put back afterwards.
+ */
+public class CachingPriceCalculator implements PriceCalculator {
+
+    private static final int WAYS = 2;
+
+    private final PriceCalculator delegate;
+    private final long ttlNanos;
+    private final int setMask;
+
+    // Slot i of every array describes the same cache entry; expiresAt == 0 marks an empty slot
+    private final long[] costBits;
+    private final long[] discountBits;
+    private final double[] sellingPrices;
+    private final long[] expiresAt;
+    private final long[] lastUsed;
+    // Per set, incremented whenever entries of the set are invalidated
+    private final long[] generations;
+
+    private final Object[] locks;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param delegate   calculator to call on a cache miss, usually the RMI stub
+     * @param maxEntries maximum number of cached prices, rounded up to a power of two
+     * @param ttl        how long a cached price stays valid
+     */
+    public CachingPriceCalculator(PriceCalculator delegate, int maxEntries, long ttl, TimeUnit unit) {
+        if (maxEntries < WAYS) {
+            throw new IllegalArgumentException("Cache must hold at least " + WAYS + " entries: " + maxEntries);
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("Time-to-live must be positive: " + ttl);
+        }
+
+        int sets = Integer.highestOneBit(maxEntries / WAYS);
+        if (sets * WAYS < maxEntries) {
+            sets <<= 1;
+        }
+        int slots = sets * WAYS;
+
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.setMask = sets - 1;
+        this.costBits = new long[slots];
+        this.discountBits = new long[slots];
+        this.sellingPrices = new double[slots];
+        this.expiresAt = new long[slots];
+        this.lastUsed = new long[slots];
+        this.generations = new long[sets];
+
+        this.locks = new Object[Math.min(sets, 64)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Wraps the calculator using the price.client.cacheSize and price.client.cacheTtlSeconds
+     * system properties, or returns it unchanged when the cache size is 0.
+     */
+    public static PriceCalculator wrapFromSystemProperties(PriceCalculator calculator) {
+        int cacheSize = Integer.getInteger("price.client.cacheSize", 1024);
+        long ttlSeconds = Long.getLong("price.client.cacheTtlSeconds", 60L);
+
+        if (cacheSize <= 0) {
+            return calculator;
+        }
+        return new CachingPriceCalculator(calculator, cacheSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public double calculateSellingPrice(double costPrice, double discountAmount) throws RemoteException {
+        long cost = Double.doubleToLongBits(costPrice);
+        long discount = Double.doubleToLongBits(discountAmount);
+        int set = setIndex(cost, discount);
+
+        long now = System.nanoTime();
+        long generation;
+        synchronized (lockFor(set)) {
+            int slot = findSlot(set, cost, discount, now);
+            if (slot >= 0) {
+                lastUsed[slot] = now;
+                hits.increment();
+                return sellingPrices[slot];
+            }
+            generation = generations[set];
+        }
+
+        // Do the remote call outside the lock so other keys in this stripe are not held up
+        misses.increment();
+        double sellingPrice = delegate.calculateSellingPrice(costPrice, discountAmount);
+        store(set, cost, discount, sellingPrice, generation);
+        return sellingPrice;
+    }
+
+    @Override
+    public double[] calculateSellingPrices(double[] costPrices, double[] discountAmounts) throws RemoteException {
+        if (costPrices.length != discountAmounts.length) {
+            throw new IllegalArgumentException("Cost prices and discount amounts must have the same length: "
+                    + costPrices.length + " != " + discountAmounts.length);
+        }
+
+        double[] sellingPrices = new double[costPrices.length];
+        int[] missing = new int[costPrices.length];
+        long[] missingGenerations = new long[costPrices.length];
+        int missingCount = 0;
+
+        long now = System.nanoTime();
+        for (int i = 0; i < costPrices.length; i++) {
+            long cost = Double.doubleToLongBits(costPrices[i]);
+            long discount = Double.doubleToLongBits(discountAmounts[i]);
+            int set = setIndex(cost, discount);
+
+            synchronized (lockFor(set)) {
+                int slot = findSlot(set, cost, discount, now);
+                if (slot >= 0) {
+                    lastUsed[slot] = now;
+                    sellingPrices[i] = this.sellingPrices[slot];
+                    continue;
+                }
+                missingGenerations[missingCount] = generations[set];
+            }
+            missing[missingCount++] = i;
+        }
+
+        hits.add(costPrices.length - missingCount);
+        misses.add(missingCount);
+        if (missingCount == 0) {
+            return sellingPrices;
+        }
+
+        // Fetch every miss in a single remote batch
+        double[] missingCosts = new double[missingCount];
+        double[] missingDiscounts = new double[missingCount];
+        for (int j = 0; j < missingCount; j++) {
+            missingCosts[j] = costPrices[missing[j]];
+            missingDiscounts[j] = discountAmounts[missing[j]];
+        }
+
+        double[] fetched = delegate.calculateSellingPrices(missingCosts, missingDiscounts);
+        for (int j = 0; j < missingCount; j++) {
+            sellingPrices[missing[j]] = fetched[j];
+
+            long cost = Double.doubleToLongBits(missingCosts[j]);
+            long discount = Double.doubleToLongBits(missingDiscounts[j]);
+            store(setIndex(cost, discount), cost, discount, fetched[j], missingGenerations[j]);
+        }
+        return sellingPrices;
+    }
+
+    /**
+     * Removes the cached price for one (cost price, discount) pair, if any.
+     */
+    public void invalidate(double costPrice, double discountAmount) {
+        long cost = Double.doubleToLongBits(costPrice);
+        long discount = Double.doubleToLongBits(discountAmount);
+        int set = setIndex(cost, discount);
+
+        synchronized (lockFor(set)) {
+            // Also drops replies still on their way for other keys of this set; they are fetched again
+            generations[set]++;
+            int first = set * WAYS;
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (expiresAt[slot] != 0 && costBits[slot] == cost && discountBits[slot] == discount) {
+                    expiresAt[slot] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every cached price, for example after pricing rules change on the server.
+     */
+    public void invalidateAll() {
+        for (int set = 0; set <= setMask; set++) {
+            synchronized (lockFor(set)) {
+                generations[set]++;
+                int first = set * WAYS;
+                for (int slot = first; slot < first + WAYS; slot++) {
+                    expiresAt[slot] = 0;
+                }
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of entries removed because they expired or their set was full.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CachingPriceCalculator[hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private int setIndex(long cost, long discount) {
+        long hash = cost * 0x9E3779B97F4A7C15L + discount;
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        return (int) (hash ^ (hash >>> 32)) & setMask;
+    }
+
+    private Object lockFor(int set) {
+        return locks[set & (locks.length - 1)];
+    }
+
+    // Must be called while holding lockFor(set); returns -1 on a miss
+    private int findSlot(int set, long cost, long discount, long now) {
+        int first = set * WAYS;
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (expiresAt[slot] != 0 && costBits[slot] == cost && discountBits[slot] == discount) {
+                if (now - expiresAt[slot] < 0) {
+                    return slot;
+                }
+                expiresAt[slot] = 0;
+                evictions.increment();
+            }
+        }
+        return -1;
+    }
+
+    // generation is generations[set] as it was before the price was fetched
+    private void store(int set, long cost, long discount, double sellingPrice, long generation) {
+        long now = System.nanoTime();
+        synchronized (lockFor(set)) {
+            if (generations[set] != generation) {
+                // Invalidated while the price was being fetched; it may be stale
+                return;
+            }
+            int first = set * WAYS;
+            int target = -1;
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (expiresAt[slot] != 0 && costBits[slot] == cost && discountBits[slot] == discount) {
+                    target = slot;
+                    break;
+                }
+                if (target < 0 && (expiresAt[slot] == 0 || now - expiresAt[slot] >= 0)) {
+                    target = slot;
+                }
+            }
+
+            if (target < 0) {
+                // Set is full of live entries; evict the least recently used one
+                target = first;
+                for (int slot = first + 1; slot < first + WAYS; slot++) {
+                    if (lastUsed[slot] - lastUsed[target] < 0) {
+                        target = slot;
+                    }
+                }
+                evictions.increment();
+            } else if (expiresAt[target] != 0 && (costBits[target] != cost || discountBits[target] != discount)) {
+                // Reusing a slot whose entry had expired
+                evictions.increment();
+            }
+
+            costBits[target] = cost;
+            discountBits[target] = discount;
+            sellingPrices[target] = sellingPrice;
+            // | 1 keeps the expiry non-zero, since zero marks an empty slot
+            expiresAt[target] = (now + ttlNanos) | 1L;
+            lastUsed[target] = now;
+        }
+    }
+}
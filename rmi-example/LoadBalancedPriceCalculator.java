@@ -0,0 +1,325 @@
+package org.example;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads price calculations over several PriceServer registries.
+ *
+ * Each server's stub is looked up on a background thread. A call goes to the
+ * next live server (round-robin) or to the one with the fewest calls in flight.
+ * If a call fails with a RemoteException the stub is dropped, the call is retried
+ * on another server, and the dropped stub is looked up again in the background,
+ * so callers never wait for a registry lookup. Live servers are also pinged
+ * periodically so that a dead server is dropped before a caller hits it.
+ */
+public class LoadBalancedPriceCalculator implements PriceCalculator, AutoCloseable {
+
+    public enum Strategy {
+        ROUND_ROBIN,
+        LEAST_IN_FLIGHT
+    }
+
+    private static final long MIN_RETRY_MILLIS = 250;
+    private static final long MAX_RETRY_MILLIS = 10_000;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Strategy strategy;
+    private final AtomicInteger nextNode = new AtomicInteger();
+    private final ScheduledExecutorService lookupExecutor;
+
+    /**
+     * @param endpoints servers written as host:port or host:port/bindingName
+     * @param strategy  how to choose the server for each call
+     */
+    public LoadBalancedPriceCalculator(List<String> endpoints, Strategy strategy) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one pricing server is required");
+        }
+        this.strategy = strategy;
+        for (String endpoint : endpoints) {
+            nodes.add(Node.parse(endpoint.trim()));
+        }
+
+        lookupExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "price-stub-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Node node : nodes) {
+            scheduleLookup(node, 0);
+        }
+
+        long healthCheckMillis = Long.getLong("price.healthCheckMillis", 2000L);
+        if (healthCheckMillis > 0) {
+            lookupExecutor.scheduleWithFixedDelay(this::checkHealth, healthCheckMillis, healthCheckMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates a calculator from the price.servers system property, a comma separated
+     * list of endpoints (default localhost:1099), and price.balancer (ROUND_ROBIN or
+     * LEAST_IN_FLIGHT, default LEAST_IN_FLIGHT).
+     */
+    public static LoadBalancedPriceCalculator fromSystemProperties() {
+        String servers = System.getProperty("price.servers", "localhost:1099");
+        Strategy strategy = Strategy.valueOf(System.getProperty("price.balancer", Strategy.LEAST_IN_FLIGHT.name()));
+
+        List<String> endpoints = new ArrayList<>();
+        for (String endpoint : servers.split(",")) {
+            if (!endpoint.trim().isEmpty()) {
+                endpoints.add(endpoint);
+            }
+        }
+        return new LoadBalancedPriceCalculator(endpoints, strategy);
+    }
+
+    /**
+     * Waits until at least one server has been looked up, for use at startup.
+     *
+     * @return true if a server is available
+     */
+    public boolean awaitAvailable(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (getAvailableCount() == 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    /**
+     * Number of servers that currently have a usable stub.
+     */
+    public int getAvailableCount() {
+        int available = 0;
+        for (Node node : nodes) {
+            if (node.stub != null) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Statistics from the most recent successful ping of each server that is currently up.
+     */
+    public List<PriceNodeStats> getNodeStats() {
+        List<PriceNodeStats> stats = new ArrayList<>();
+        for (Node node : nodes) {
+            PriceNodeStats lastStats = node.lastStats;
+            if (node.stub != null && lastStats != null) {
+                stats.add(lastStats);
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public double calculateSellingPrice(double costPrice, double discountAmount) throws RemoteException {
+        boolean[] tried = new boolean[nodes.size()];
+        RemoteException lastFailure = null;
+
+        for (int attempt = 0; attempt < nodes.size(); attempt++) {
+            Node node = choose(tried);
+            if (node == null) {
+                break;
+            }
+            PriceCalculator stub = node.stub;
+            if (stub == null) {
+                continue;
+            }
+
+            node.inFlight.incrementAndGet();
+            try {
+                return stub.calculateSellingPrice(costPrice, discountAmount);
+            } catch (RemoteException e) {
+                lastFailure = e;
+                markStale(node, stub);
+            } finally {
+                node.inFlight.decrementAndGet();
+            }
+        }
+        throw noServerAvailable(lastFailure);
+    }
+
+    @Override
+    public double[] calculateSellingPrices(double[] costPrices, double[] discountAmounts) throws RemoteException {
+        boolean[] tried = new boolean[nodes.size()];
+        RemoteException lastFailure = null;
+
+        for (int attempt = 0; attempt < nodes.size(); attempt++) {
+            Node node = choose(tried);
+            if (node == null) {
+                break;
+            }
+            PriceCalculator stub = node.stub;
+            if (stub == null) {
+                continue;
+            }
+
+            node.inFlight.incrementAndGet();
+            try {
+                return stub.calculateSellingPrices(costPrices, discountAmounts);
+            } catch (RemoteException e) {
+                lastFailure = e;
+                markStale(node, stub);
+            } finally {
+                node.inFlight.decrementAndGet();
+            }
+        }
+        throw noServerAvailable(lastFailure);
+    }
+
+    @Override
+    public void close() {
+        lookupExecutor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("LoadBalancedPriceCalculator[");
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(node).append(node.stub != null ? " up" : " down")
+                    .append(" inFlight=").append(node.inFlight.get());
+        }
+        return text.append(']').toString();
+    }
+
+    // Picks an untried node with a live stub and marks it as tried; null if none is left
+    private Node choose(boolean[] tried) {
+        int count = nodes.size();
+        int chosen = -1;
+
+        if (strategy == Strategy.ROUND_ROBIN) {
+            int start = Math.floorMod(nextNode.getAndIncrement(), count);
+            for (int i = 0; i < count; i++) {
+                int index = (start + i) % count;
+                if (!tried[index] && nodes.get(index).stub != null) {
+                    chosen = index;
+                    break;
+                }
+            }
+        } else {
+            int fewest = Integer.MAX_VALUE;
+            int start = Math.floorMod(nextNode.getAndIncrement(), count);
+            for (int i = 0; i < count; i++) {
+                int index = (start + i) % count;
+                Node node = nodes.get(index);
+                if (!tried[index] && node.stub != null && node.inFlight.get() < fewest) {
+                    fewest = node.inFlight.get();
+                    chosen = index;
+                }
+            }
+        }
+
+        if (chosen < 0) {
+            return null;
+        }
+        tried[chosen] = true;
+        return nodes.get(chosen);
+    }
+
+    private void markStale(Node node, PriceCalculator failedStub) {
+        // Only the first caller to see this stub fail schedules the new lookup
+        synchronized (node) {
+            if (node.stub != failedStub) {
+                return;
+            }
+            node.stub = null;
+        }
+        System.err.println("Pricing server " + node + " failed, looking it up again");
+        scheduleLookup(node, 0);
+    }
+
+    private void checkHealth() {
+        for (Node node : nodes) {
+            PriceCalculator stub = node.stub;
+            if (!(stub instanceof PriceNodeMonitor)) {
+                continue;
+            }
+            try {
+                node.lastStats = ((PriceNodeMonitor) stub).ping();
+            } catch (RemoteException e) {
+                markStale(node, stub);
+            }
+        }
+    }
+
+    private void scheduleLookup(Node node, long delayMillis) {
+        if (lookupExecutor.isShutdown()) {
+            return;
+        }
+        lookupExecutor.schedule(() -> lookUp(node), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void lookUp(Node node) {
+        try {
+            PriceCalculator stub = (PriceCalculator) LocateRegistry.getRegistry(node.host, node.port)
+                    .lookup(node.bindingName);
+            synchronized (node) {
+                node.stub = stub;
+                node.retryMillis = MIN_RETRY_MILLIS;
+            }
+        } catch (Exception e) {
+            // Back off so a server that is down is not hammered with lookups
+            long delay = node.retryMillis;
+            node.retryMillis = Math.min(delay * 2, MAX_RETRY_MILLIS);
+            scheduleLookup(node, delay);
+        }
+    }
+
+    private static RemoteException noServerAvailable(RemoteException lastFailure) {
+        return new RemoteException("No pricing server is available", lastFailure);
+    }
+
+    private static final class Node {
+        final String host;
+        final int port;
+        final String bindingName;
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile PriceCalculator stub;
+        volatile PriceNodeStats lastStats;
+        long retryMillis = MIN_RETRY_MILLIS;
+
+        Node(String host, int port, String bindingName) {
+            this.host = host;
+            this.port = port;
+            this.bindingName = bindingName;
+        }
+
+        static Node parse(String endpoint) {
+            String bindingName = "PriceCalculator";
+            int slash = endpoint.indexOf('/');
+            if (slash >= 0) {
+                bindingName = endpoint.substring(slash + 1);
+                endpoint = endpoint.substring(0, slash);
+            }
+
+            int colon = endpoint.lastIndexOf(':');
+            if (colon < 0) {
+                return new Node(endpoint, 1099, bindingName);
+            }
+            return new Node(endpoint.substring(0, colon), Integer.parseInt(endpoint.substring(colon + 1)),
+                    bindingName);
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port + "/" + bindingName;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example;
+
+/**
+ * Receives the details of each price calculated by PriceCalculatorImpl.
+ * Implementations are called on RMI worker threads, so they must not block.
+ */
+public interface PriceAuditor {
+
+    /** Auditor that records nothing. */
+    PriceAuditor DISABLED = new PriceAuditor() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void record(double costPrice, double discountAmount, double sellingPrice) {
+        }
+    };
+
+    /**
+     * Lets callers skip auditing work entirely when nothing would be recorded.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    void record(double costPrice, double discountAmount, double sellingPrice);
+}
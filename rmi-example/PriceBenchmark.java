@@ -0,0 +1,100 @@
+package org.example;
+
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * Compares the throughput of pricing items one remote call at a time with
+ * pricing them through calculateSellingPrices in batches.
+ *
+ * Usage: PriceBenchmark [items] [batchSize] [registryPort]
+ */
+public class PriceBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 1099;
+
+        // Start an in-process server so the benchmark measures loopback RMI only
+        PriceCalculatorImpl server = new PriceCalculatorImpl();
+        Registry registry = LocateRegistry.createRegistry(port);
+        registry.rebind("PriceCalculator", server);
+
+        try {
+            PriceCalculator calculator = (PriceCalculator) LocateRegistry.getRegistry("localhost", port)
+                    .lookup("PriceCalculator");
+
+            double[] costPrices = new double[items];
+            double[] discountAmounts = new double[items];
+            for (int i = 0; i < items; i++) {
+                costPrices[i] = 1000 + i % 5000;
+                discountAmounts[i] = i % 100;
+            }
+
+            // Warm up both paths before measuring
+            runPerItem(calculator, costPrices, discountAmounts, Math.min(items, 2000));
+            runBatched(calculator, costPrices, discountAmounts, batchSize);
+
+            long start = System.nanoTime();
+            double perItemChecksum = runPerItem(calculator, costPrices, discountAmounts, items);
+            long perItemNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double batchedChecksum = runBatched(calculator, costPrices, discountAmounts, batchSize);
+            long batchedNanos = System.nanoTime() - start;
+
+            System.out.println();
+            System.out.println("Items priced:      " + items);
+            System.out.println("Batch size:        " + batchSize);
+            report("Per-item calls:", items, perItemNanos);
+            report("Batched calls:", items, batchedNanos);
+            System.out.printf("Speed-up:          %.1fx%n", (double) perItemNanos / batchedNanos);
+
+            if (perItemChecksum != batchedChecksum) {
+                System.err.println("Checksum mismatch: " + perItemChecksum + " != " + batchedChecksum);
+            }
+        } finally {
+            UnicastRemoteObject.unexportObject(server, true);
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
+
+    private static double runPerItem(PriceCalculator calculator, double[] costPrices,
+                                     double[] discountAmounts, int count) throws Exception {
+        double checksum = 0;
+        for (int i = 0; i < count; i++) {
+            checksum += calculator.calculateSellingPrice(costPrices[i], discountAmounts[i]);
+        }
+        return checksum;
+    }
+
+    private static double runBatched(PriceCalculator calculator, double[] costPrices,
+                                     double[] discountAmounts, int batchSize) throws Exception {
+        double checksum = 0;
+        double[] costBatch = new double[batchSize];
+        double[] discountBatch = new double[batchSize];
+
+        for (int from = 0; from < costPrices.length; from += batchSize) {
+            int length = Math.min(batchSize, costPrices.length - from);
+            if (length != costBatch.length) {
+                costBatch = new double[length];
+                discountBatch = new double[length];
+            }
+            System.arraycopy(costPrices, from, costBatch, 0, length);
+            System.arraycopy(discountAmounts, from, discountBatch, 0, length);
+
+            double[] sellingPrices = calculator.calculateSellingPrices(costBatch, discountBatch);
+            for (double sellingPrice : sellingPrices) {
+                checksum += sellingPrice;
+            }
+        }
+        return checksum;
+    }
+
+    private static void report(String label, int items, long nanos) {
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf("%-18s %,.0f prices/sec (%.3f s)%n", label, items / seconds, seconds);
+    }
+}
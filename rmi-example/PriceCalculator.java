@@ -5,4 +5,10 @@ import java.rmi.RemoteException;
 
 public interface PriceCalculator extends Remote {
     double calculateSellingPrice(double costPrice, double discountAmount) throws RemoteException;
+
+    /**
+     * Calculates many selling prices in a single remote call.
+     * costPrices[i] and discountAmounts[i] give the selling price at index i of the result.
+     */
+    double[] calculateSellingPrices(double[] costPrices, double[] discountAmounts) throws RemoteException;
 }
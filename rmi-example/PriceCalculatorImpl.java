@@ -1,25 +1,116 @@
 package org.example;
 
 import java.rmi.RemoteException;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
-public class PriceCalculatorImpl extends UnicastRemoteObject implements PriceCalculator {
+public class PriceCalculatorImpl extends UnicastRemoteObject implements PriceCalculator, PriceNodeMonitor {
+
+    private final String nodeName;
+    private final PriceAuditor auditor;
+
+    // Load statistics reported by ping()
+    private final long startedAt = System.currentTimeMillis();
+    private final LongAdder callsServed = new LongAdder();
+    private final LongAdder pricesCalculated = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram();
 
     public PriceCalculatorImpl() throws RemoteException {
+        this("PriceCalculator", PriceAuditor.DISABLED);
+    }
+
+    public PriceCalculatorImpl(PriceAuditor auditor) throws RemoteException {
+        this("PriceCalculator", auditor);
+    }
+
+    public PriceCalculatorImpl(String nodeName, PriceAuditor auditor) throws RemoteException {
         super();
+        this.nodeName = nodeName;
+        this.auditor = auditor;
+    }
+
+    /**
+     * Exports the calculator through the given socket factories, e.g. a TunedSocketFactory.
+     *
+     * @param port port to export on, or 0 for any free port
+     */
+    public PriceCalculatorImpl(String nodeName, PriceAuditor auditor, int port,
+                               RMIClientSocketFactory clientSocketFactory,
+                               RMIServerSocketFactory serverSocketFactory) throws RemoteException {
+        super(port, clientSocketFactory, serverSocketFactory);
+        this.nodeName = nodeName;
+        this.auditor = auditor;
     }
 
     @Override
     public double calculateSellingPrice(double costPrice, double discountAmount) throws RemoteException {
-        // Calculate selling price by subtracting discount from cost price
-        double sellingPrice = costPrice - discountAmount;
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            // Calculate selling price by subtracting discount from cost price
+            double sellingPrice = costPrice - discountAmount;
 
-        // Print calculation details on server side
-        System.out.println("Server calculating price:");
-        System.out.println("Cost Price: Rs. " + costPrice);
-        System.out.println("Discount Amount: Rs. " + discountAmount);
-        System.out.println("Selling Price: Rs. " + sellingPrice);
+            // Hand calculation details to the auditor instead of printing on the RMI thread
+            if (auditor.isEnabled()) {
+                auditor.record(costPrice, discountAmount, sellingPrice);
+            }
 
-        return sellingPrice;
+            callsServed.increment();
+            pricesCalculated.increment();
+            latency.record(System.nanoTime() - start);
+
+            return sellingPrice;
+        } finally {
+            // Also when a plugged-in auditor throws, or the count would never drop again
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public double[] calculateSellingPrices(double[] costPrices, double[] discountAmounts) throws RemoteException {
+        if (costPrices.length != discountAmounts.length) {
+            throw new IllegalArgumentException("Cost prices and discount amounts must have the same length: "
+                    + costPrices.length + " != " + discountAmounts.length);
+        }
+
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            // Work on the primitive arrays directly so no Double is created per item
+            double[] sellingPrices = new double[costPrices.length];
+            for (int i = 0; i < sellingPrices.length; i++) {
+                sellingPrices[i] = costPrices[i] - discountAmounts[i];
+            }
+
+            if (auditor.isEnabled()) {
+                for (int i = 0; i < sellingPrices.length; i++) {
+                    auditor.record(costPrices[i], discountAmounts[i], sellingPrices[i]);
+                }
+            }
+
+            callsServed.increment();
+            pricesCalculated.add(sellingPrices.length);
+            latency.record(System.nanoTime() - start);
+
+            return sellingPrices;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public PriceNodeStats ping() throws RemoteException {
+        return new PriceNodeStats(nodeName,
+                System.currentTimeMillis() - startedAt,
+                callsServed.sum(),
+                pricesCalculated.sum(),
+                inFlight.get(),
+                latency.percentile(0.50),
+                latency.percentile(0.90),
+                latency.percentile(0.99));
     }
 }
@@ -1,9 +1,11 @@
 package org.example;
 
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.text.DecimalFormat;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -14,6 +16,11 @@ public class PriceClient extends JFrame {
     private JTextField discountField;
     private JLabel resultLabel;
     private PriceCalculator calculator;
+    private AsyncPriceClient asyncClient;
+    // Number of the most recent request; replies to older ones are ignored. Used on the EDT only
+    private int latestRequest;
+    // Recalculates once typing pauses, so not every keystroke costs a remote call
+    private Timer typingTimer;
 
     public PriceClient() {
         super("Price Calculator");
@@ -21,29 +28,37 @@ public class PriceClient extends JFrame {
         setSize(400, 250);
         setLayout(new BorderLayout(10, 10));
 
-        try {
-            // Get the registry
-            Registry registry = LocateRegistry.getRegistry("localhost", 1099);
+        // Connect with the transport chosen by -Dprice.transport; both keep reconnecting in the
+        // background, so a server that is down at startup is picked up once it comes back
+        calculator = createCalculator();
 
-            // Look up the remote object
-            calculator = (PriceCalculator) registry.lookup("PriceCalculator");
+        // Remember recent results on the client
+        calculator = CachingPriceCalculator.wrapFromSystemProperties(calculator);
 
-            // Build the UI
-            initializeUI();
+        // Remote calls run on background threads so the window stays responsive
+        asyncClient = new AsyncPriceClient(calculator);
 
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this,
-                    "Error connecting to server: " + e.getMessage(),
-                    "Connection Error",
-                    JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
-            System.exit(1);
-        }
+        // Build the UI
+        initializeUI();
 
         setLocationRelativeTo(null);
         setVisible(true);
     }
 
+    private static PriceCalculator createCalculator() {
+        String transport = System.getProperty("price.transport", "rmi");
+
+        if ("binary".equalsIgnoreCase(transport)) {
+            // Compact NIO protocol to the server in -Dprice.binary.server
+            return BinaryPriceCalculator.fromSystemProperties();
+        }
+        if ("rmi".equalsIgnoreCase(transport)) {
+            // Look up the servers listed in -Dprice.servers in the background and spread calls over them
+            return LoadBalancedPriceCalculator.fromSystemProperties();
+        }
+        throw new IllegalArgumentException("Unknown price.transport: " + transport + " (use rmi or binary)");
+    }
+
     private void initializeUI() {
         // Create panels
         JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
@@ -87,37 +102,115 @@ public class PriceClient extends JFrame {
                 calculatePrice();
             }
         });
+
+        // Recalculate when the user stops typing for -Dprice.client.typingDelayMillis; each new
+        // value cancels the request before it
+        typingTimer = new Timer(Integer.getInteger("price.client.typingDelayMillis", 300),
+                e -> calculatePriceQuietly());
+        typingTimer.setRepeats(false);
+        DocumentListener inputListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                typingTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                typingTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                typingTimer.restart();
+            }
+        };
+        costPriceField.getDocument().addDocumentListener(inputListener);
+        discountField.getDocument().addDocumentListener(inputListener);
     }
 
     private void calculatePrice() {
+        // The button asks for the same values; no need to calculate them again when typing pauses
+        typingTimer.stop();
         try {
             // Parse input values
             double costPrice = Double.parseDouble(costPriceField.getText());
             double discountAmount = Double.parseDouble(discountField.getText());
 
-            // Call the remote method
-            double sellingPrice = calculator.calculateSellingPrice(costPrice, discountAmount);
-
-            // Format the result
-            DecimalFormat df = new DecimalFormat("#,##0.00");
-
-            // Display the result
-            resultLabel.setText("Selling Price: Rs. " + df.format(sellingPrice));
+            requestPrice(costPrice, discountAmount, false);
 
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this,
                     "Please enter valid numbers for cost price and discount.",
                     "Input Error",
                     JOptionPane.ERROR_MESSAGE);
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this,
-                    "Error calculating price: " + e.getMessage(),
-                    "Calculation Error",
-                    JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
         }
     }
 
+    private void calculatePriceQuietly() {
+        try {
+            requestPrice(Double.parseDouble(costPriceField.getText()),
+                    Double.parseDouble(discountField.getText()), true);
+        } catch (NumberFormatException e) {
+            // Wait until both fields hold numbers; the button reports input errors
+        }
+    }
+
+    /**
+     * @param quiet report a failure in the result label only, as while typing, instead of
+     *              in a dialog
+     */
+    private void requestPrice(double costPrice, double discountAmount, boolean quiet) {
+        int request = ++latestRequest;
+        resultLabel.setText("Calculating...");
+
+        // Call the remote method off the Event Dispatch Thread
+        asyncClient.calculateLatest(costPrice, discountAmount)
+                .whenComplete((sellingPrice, error) -> SwingUtilities.invokeLater(() -> {
+                    if (request != latestRequest) {
+                        // A newer request has replaced this one, even if this one failed first
+                        return;
+                    }
+                    if (error == null) {
+                        showPrice(sellingPrice);
+                    } else if (AsyncPriceClient.isCancellation(error)) {
+                        return;
+                    } else if (quiet) {
+                        resultLabel.setText("Could not calculate: " + errorMessage(error));
+                    } else {
+                        showCalculationError(error);
+                    }
+                }));
+    }
+
+    private void showPrice(double sellingPrice) {
+        // Format the result
+        DecimalFormat df = new DecimalFormat("#,##0.00");
+
+        // Display the result
+        resultLabel.setText("Selling Price: Rs. " + df.format(sellingPrice));
+    }
+
+    private void showCalculationError(Throwable error) {
+        resultLabel.setText("Selling Price will appear here");
+        JOptionPane.showMessageDialog(this,
+                "Error calculating price: " + errorMessage(error),
+                "Calculation Error",
+                JOptionPane.ERROR_MESSAGE);
+        unwrap(error).printStackTrace();
+    }
+
+    private static String errorMessage(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof TimeoutException
+                ? "The server did not respond in time."
+                : cause.getMessage();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+    }
+
     public static void main(String[] args) {
         // Create client on EDT
         SwingUtilities.invokeLater(new Runnable() {
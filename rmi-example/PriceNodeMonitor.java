@@ -0,0 +1,16 @@
+package org.example;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Health and load information exported by every pricing server instance.
+ * The stub looked up for a PriceCalculatorImpl implements this interface too.
+ */
+public interface PriceNodeMonitor extends Remote {
+
+    /**
+     * Cheap call that returns the current statistics of this instance.
+     */
+    PriceNodeStats ping() throws RemoteException;
+}
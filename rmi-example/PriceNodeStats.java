@@ -0,0 +1,79 @@
+package org.example;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the load on one pricing server instance, returned by PriceNodeMonitor.ping().
+ * Latency percentiles are server-side service times in nanoseconds and cover every
+ * call since the instance started.
+ */
+public class PriceNodeStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String nodeName;
+    private final long uptimeMillis;
+    private final long callsServed;
+    private final long pricesCalculated;
+    private final int inFlight;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+
+    public PriceNodeStats(String nodeName, long uptimeMillis, long callsServed, long pricesCalculated,
+                          int inFlight, long p50Nanos, long p90Nanos, long p99Nanos) {
+        this.nodeName = nodeName;
+        this.uptimeMillis = uptimeMillis;
+        this.callsServed = callsServed;
+        this.pricesCalculated = pricesCalculated;
+        this.inFlight = inFlight;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public long getUptimeMillis() {
+        return uptimeMillis;
+    }
+
+    /**
+     * Number of remote pricing calls completed, counting a batch as one call.
+     */
+    public long getCallsServed() {
+        return callsServed;
+    }
+
+    /**
+     * Number of individual prices calculated, counting every item of a batch.
+     */
+    public long getPricesCalculated() {
+        return pricesCalculated;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    @Override
+    public String toString() {
+        return nodeName + ": calls=" + callsServed + ", prices=" + pricesCalculated + ", inFlight=" + inFlight
+                + ", p50=" + p50Nanos + "ns, p90=" + p90Nanos + "ns, p99=" + p99Nanos + "ns"
+                + ", uptime=" + (uptimeMillis / 1000) + "s";
+    }
+}
@@ -0,0 +1,57 @@
+package org.example;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.server.UnicastRemoteObject;
+import java.text.DecimalFormat;
+
+/**
+ * Console client that subscribes to pushed prices from PriceQuoteService.
+ *
+ * It subscribes to a few rules, then changes one rule many times in a row to show
+ * that the server coalesces the changes into a single push.
+ *
+ * Usage: PriceQuoteClient [host] [port]
+ */
+public class PriceQuoteClient implements PriceQuoteListener {
+
+    private final DecimalFormat df = new DecimalFormat("#,##0.00");
+
+    @Override
+    public void onQuotes(long subscriptionId, int[] ruleIds, double[] sellingPrices) throws RemoteException {
+        StringBuilder line = new StringBuilder("Quotes for subscription ").append(subscriptionId).append(':');
+        for (int i = 0; i < ruleIds.length; i++) {
+            line.append(" rule ").append(ruleIds[i]).append(" = Rs. ").append(df.format(sellingPrices[i]));
+        }
+        System.out.println(line);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 1099;
+
+        PriceQuoteService service = (PriceQuoteService) LocateRegistry.getRegistry(host, port)
+                .lookup("PriceQuoteService");
+
+        // Export the listener so the server can call it back
+        PriceQuoteClient client = new PriceQuoteClient();
+        PriceQuoteListener listener = (PriceQuoteListener) UnicastRemoteObject.exportObject(client, 0);
+
+        try {
+            double[] costPrices = {5000, 1200, 800};
+            double[] discountAmounts = {50, 100, 0};
+            long subscriptionId = service.subscribe(listener, costPrices, discountAmounts);
+            Thread.sleep(500);
+
+            System.out.println("Changing the discount of rule 1 ten times...");
+            for (int discount = 110; discount <= 200; discount += 10) {
+                service.updateRules(subscriptionId, new int[]{1}, new double[]{1200}, new double[]{discount});
+            }
+            Thread.sleep(500);
+
+            service.unsubscribe(subscriptionId);
+        } finally {
+            UnicastRemoteObject.unexportObject(client, true);
+        }
+    }
+}
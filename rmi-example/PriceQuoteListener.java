@@ -0,0 +1,18 @@
+package org.example;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Callback exported by a client to receive pushed prices from PriceQuoteService.
+ */
+public interface PriceQuoteListener extends Remote {
+
+    /**
+     * Delivers the latest selling prices for the rules that changed since the last push.
+     * sellingPrices[i] belongs to ruleIds[i]. The server waits for this call to return
+     * before pushing again to the same listener, so slow listeners only receive fewer,
+     * larger batches.
+     */
+    void onQuotes(long subscriptionId, int[] ruleIds, double[] sellingPrices) throws RemoteException;
+}
@@ -0,0 +1,32 @@
+package org.example;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Push-based alternative to PriceCalculator: a client subscribes to a set of pricing
+ * rules and the server sends recalculated prices whenever those rules change.
+ *
+ * A rule is one (cost price, discount amount) pair; its id is its index in the arrays
+ * given to subscribe.
+ */
+public interface PriceQuoteService extends Remote {
+
+    /**
+     * Subscribes the listener to the given rules. The current price of every rule is
+     * pushed straight away.
+     *
+     * @return id to pass to updateRules and unsubscribe
+     */
+    long subscribe(PriceQuoteListener listener, double[] costPrices, double[] discountAmounts)
+            throws RemoteException;
+
+    /**
+     * Changes the inputs of some rules. Changes made in quick succession are coalesced
+     * and only the latest value of each rule is pushed.
+     */
+    void updateRules(long subscriptionId, int[] ruleIds, double[] costPrices, double[] discountAmounts)
+            throws RemoteException;
+
+    void unsubscribe(long subscriptionId) throws RemoteException;
+}
@@ -0,0 +1,253 @@
+package org.example;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes recalculated prices to subscribed PriceQuoteListeners.
+ *
+ * Each subscription keeps the latest inputs of its rules and a set of changed rules.
+ * Changes are collected for a short coalescing window and then pushed as one batch on
+ * a dedicated fan-out pool. A subscription never has more than one push queued or
+ * running, so a slow listener only makes its own batches larger (bounded by its rule
+ * count) and cannot hold up other subscribers' pushes beyond the one thread it occupies.
+ */
+public class PriceQuoteServiceImpl extends UnicastRemoteObject implements PriceQuoteService, AutoCloseable {
+
+    private static final int MAX_FAILURES = 3;
+
+    private final PriceCalculator calculator;
+    private final long coalesceMillis;
+    private final int maxBatchSize;
+
+    private final Map<Long, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong nextSubscriptionId = new AtomicLong(1);
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService fanOut;
+
+    /**
+     * @param calculator     local calculator used to price the rules
+     * @param fanOutThreads  number of threads pushing to listeners
+     * @param coalesceMillis how long to collect changes before pushing them
+     * @param maxBatchSize   maximum number of prices in one push
+     */
+    public PriceQuoteServiceImpl(PriceCalculator calculator, int fanOutThreads, long coalesceMillis,
+                                 int maxBatchSize) throws RemoteException {
+        super();
+        this.calculator = calculator;
+        this.coalesceMillis = coalesceMillis;
+        this.maxBatchSize = maxBatchSize;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("price-quote-scheduler"));
+        fanOut = Executors.newFixedThreadPool(fanOutThreads, daemonThreads("price-quote-fan-out"));
+    }
+
+    /**
+     * Creates the service from the price.quotes.fanOutThreads (default 4),
+     * price.quotes.coalesceMillis (default 50) and price.quotes.maxBatchSize
+     * (default 10000) system properties.
+     */
+    public static PriceQuoteServiceImpl fromSystemProperties(PriceCalculator calculator) throws RemoteException {
+        return new PriceQuoteServiceImpl(calculator,
+                Integer.getInteger("price.quotes.fanOutThreads", 4),
+                Long.getLong("price.quotes.coalesceMillis", 50L),
+                Integer.getInteger("price.quotes.maxBatchSize", 10_000));
+    }
+
+    @Override
+    public long subscribe(PriceQuoteListener listener, double[] costPrices, double[] discountAmounts)
+            throws RemoteException {
+        checkSameLength(costPrices.length, discountAmounts.length);
+
+        long id = nextSubscriptionId.getAndIncrement();
+        Subscription subscription = new Subscription(id, listener,
+                costPrices.clone(), discountAmounts.clone());
+        subscriptions.put(id, subscription);
+
+        synchronized (subscription) {
+            for (int rule = 0; rule < costPrices.length; rule++) {
+                subscription.markChanged(rule);
+            }
+            schedulePush(subscription, 0);
+        }
+        return id;
+    }
+
+    @Override
+    public void updateRules(long subscriptionId, int[] ruleIds, double[] costPrices, double[] discountAmounts)
+            throws RemoteException {
+        checkSameLength(ruleIds.length, costPrices.length);
+        checkSameLength(ruleIds.length, discountAmounts.length);
+
+        Subscription subscription = subscriptions.get(subscriptionId);
+        if (subscription == null) {
+            throw new IllegalArgumentException("Unknown subscription: " + subscriptionId);
+        }
+
+        synchronized (subscription) {
+            for (int i = 0; i < ruleIds.length; i++) {
+                int rule = ruleIds[i];
+                if (rule < 0 || rule >= subscription.costPrices.length) {
+                    throw new IllegalArgumentException("Unknown rule " + rule + " in subscription " + subscriptionId);
+                }
+            }
+            for (int i = 0; i < ruleIds.length; i++) {
+                // Later values simply overwrite earlier ones that have not been pushed yet
+                subscription.costPrices[ruleIds[i]] = costPrices[i];
+                subscription.discountAmounts[ruleIds[i]] = discountAmounts[i];
+                subscription.markChanged(ruleIds[i]);
+            }
+            schedulePush(subscription, coalesceMillis);
+        }
+    }
+
+    @Override
+    public void unsubscribe(long subscriptionId) throws RemoteException {
+        Subscription subscription = subscriptions.remove(subscriptionId);
+        if (subscription != null) {
+            synchronized (subscription) {
+                subscription.cancelled = true;
+            }
+        }
+    }
+
+    /**
+     * Number of active subscriptions.
+     */
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void close() throws RemoteException {
+        scheduler.shutdownNow();
+        fanOut.shutdownNow();
+        subscriptions.clear();
+        UnicastRemoteObject.unexportObject(this, true);
+    }
+
+    // Must be called while holding the subscription's lock
+    private void schedulePush(Subscription subscription, long delayMillis) {
+        if (subscription.pushScheduled || subscription.cancelled || subscription.changedCount == 0) {
+            return;
+        }
+        subscription.pushScheduled = true;
+        scheduler.schedule(() -> fanOut.execute(() -> push(subscription)), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void push(Subscription subscription) {
+        int[] ruleIds;
+        double[] costPrices;
+        double[] discountAmounts;
+
+        synchronized (subscription) {
+            if (subscription.cancelled) {
+                subscription.pushScheduled = false;
+                return;
+            }
+            int count = Math.min(subscription.changedCount, maxBatchSize);
+            ruleIds = Arrays.copyOf(subscription.changedRules, count);
+            costPrices = new double[count];
+            discountAmounts = new double[count];
+            for (int i = 0; i < count; i++) {
+                int rule = ruleIds[i];
+                costPrices[i] = subscription.costPrices[rule];
+                discountAmounts[i] = subscription.discountAmounts[rule];
+                subscription.changed[rule] = false;
+            }
+            subscription.removeFirstChanged(count);
+        }
+
+        boolean delivered;
+        try {
+            double[] sellingPrices = calculator.calculateSellingPrices(costPrices, discountAmounts);
+            subscription.listener.onQuotes(subscription.id, ruleIds, sellingPrices);
+            delivered = true;
+        } catch (RemoteException | RuntimeException e) {
+            // A RuntimeException, e.g. from the calculator, counts as a failed delivery too,
+            // so the subscription is retried or dropped instead of never being pushed again
+            delivered = false;
+            System.err.println("Could not push quotes to subscription " + subscription.id + ": " + e);
+        }
+
+        synchronized (subscription) {
+            subscription.pushScheduled = false;
+            if (delivered) {
+                subscription.failures = 0;
+            } else if (++subscription.failures >= MAX_FAILURES) {
+                // The listener is gone or keeps failing; stop working for it
+                subscription.cancelled = true;
+                subscriptions.remove(subscription.id);
+                return;
+            } else {
+                // Send these rules again with the next batch
+                for (int rule : ruleIds) {
+                    subscription.markChanged(rule);
+                }
+            }
+            schedulePush(subscription, coalesceMillis);
+        }
+    }
+
+    private static void checkSameLength(int expected, int actual) {
+        if (expected != actual) {
+            throw new IllegalArgumentException("Arrays must have the same length: " + expected + " != " + actual);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Subscription {
+        final long id;
+        final PriceQuoteListener listener;
+        final double[] costPrices;
+        final double[] discountAmounts;
+
+        // Rules changed since the last push, in the order they changed
+        final boolean[] changed;
+        final int[] changedRules;
+        int changedCount;
+
+        boolean pushScheduled;
+        boolean cancelled;
+        int failures;
+
+        Subscription(long id, PriceQuoteListener listener, double[] costPrices, double[] discountAmounts) {
+            this.id = id;
+            this.listener = listener;
+            this.costPrices = costPrices;
+            this.discountAmounts = discountAmounts;
+            this.changed = new boolean[costPrices.length];
+            this.changedRules = new int[costPrices.length];
+        }
+
+        void markChanged(int rule) {
+            if (!changed[rule]) {
+                changed[rule] = true;
+                changedRules[changedCount++] = rule;
+            }
+        }
+
+        void removeFirstChanged(int count) {
+            System.arraycopy(changedRules, count, changedRules, 0, changedCount - count);
+            changedCount -= count;
+        }
+    }
+}
@@ -2,18 +2,78 @@ package org.example;
 
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Starts one or more PriceCalculator instances.
+ *
+ * Configuration (system properties):
+ *   price.server.instances  number of calculator instances to start (default 1)
+ *   price.server.port       registry port of the first instance (default 1099)
+ *   price.server.name       binding name (default PriceCalculator)
+ *   price.server.mode       "ports" gives every instance its own registry on port, port + 1, ...;
+ *                           "names" binds them all in one registry as name-0, name-1, ... (default ports)
+ *   price.socket.*          socket settings, see TunedSocketFactory.fromSystemProperties()
+ *   price.quotes.*          push settings, see PriceQuoteServiceImpl.fromSystemProperties()
+ *   price.binary.port       if set, also serve the first instance over BinaryPriceServer on this port
+ *
+ * The first registry also holds a PriceQuoteService bound as "PriceQuoteService".
+ *
+ * To spread instances over several JVMs, start each JVM with a different port.
+ */
 public class PriceServer {
     public static void main(String[] args) {
+        int instances = Integer.getInteger("price.server.instances", 1);
+        int port = Integer.getInteger("price.server.port", 1099);
+        String name = System.getProperty("price.server.name", "PriceCalculator");
+        boolean separatePorts = !"names".equalsIgnoreCase(System.getProperty("price.server.mode", "ports"));
+
         try {
-            // Create the remote object
-            PriceCalculator calculator = new PriceCalculatorImpl();
+            // Audit calculations in the background; -Dprice.audit.sampleRate=0 turns it off
+            PriceAuditor auditor = AsyncPriceAuditor.fromSystemProperties(1.0);
+
+            // Export calculators with TCP_NODELAY and tuned buffers instead of the default sockets
+            TunedSocketFactory socketFactory = TunedSocketFactory.fromSystemProperties();
+
+            List<PriceCalculatorImpl> calculators = new ArrayList<>();
+            Registry firstRegistry = null;
+            Registry sharedRegistry = separatePorts ? null : LocateRegistry.createRegistry(port);
+
+            for (int i = 0; i < instances; i++) {
+                int instancePort = separatePorts ? port + i : port;
+                String instanceName = separatePorts || instances == 1 ? name : name + "-" + i;
+
+                // Create the remote object
+                PriceCalculatorImpl calculator = new PriceCalculatorImpl(
+                        "localhost:" + instancePort + "/" + instanceName, auditor, 0, socketFactory, socketFactory);
+
+                // Create and start the registry, or reuse the shared one
+                Registry registry = separatePorts ? LocateRegistry.createRegistry(instancePort) : sharedRegistry;
+
+                // Bind the remote object to the registry with a name
+                registry.rebind(instanceName, calculator);
+                calculators.add(calculator);
+                if (firstRegistry == null) {
+                    firstRegistry = registry;
+                }
 
-            // Create and start the registry on port 1099
-            Registry registry = LocateRegistry.createRegistry(1099);
+                System.out.println("Price Calculator bound as " + instanceName + " on port " + instancePort);
+            }
 
-            // Bind the remote object to the registry with a name
-            registry.rebind("PriceCalculator", calculator);
+            // Push quotes to subscribers, priced by the first instance
+            PriceQuoteServiceImpl quoteService = PriceQuoteServiceImpl.fromSystemProperties(calculators.get(0));
+            firstRegistry.rebind("PriceQuoteService", quoteService);
+            System.out.println("Price Quote Service bound as PriceQuoteService on port " + port);
+
+            // Optionally offer the compact binary transport next to RMI
+            Integer binaryPort = Integer.getInteger("price.binary.port");
+            if (binaryPort != null) {
+                BinaryPriceServer binaryServer = new BinaryPriceServer(calculators.get(0), binaryPort);
+                System.out.println("Binary Price Server listening on port " + binaryServer.getPort());
+            }
+
+            startStatsReporter(calculators);
 
             System.out.println("Price Calculator Server is running...");
         } catch (Exception e) {
@@ -21,4 +81,27 @@ public class PriceServer {
             e.printStackTrace();
         }
     }
+
+    // Prints each instance's load every price.server.statsIntervalSeconds seconds (0 = never)
+    private static void startStatsReporter(List<PriceCalculatorImpl> calculators) {
+        long intervalSeconds = Long.getLong("price.server.statsIntervalSeconds", 0L);
+        if (intervalSeconds <= 0) {
+            return;
+        }
+
+        Thread reporter = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(intervalSeconds * 1000);
+                    for (PriceCalculatorImpl calculator : calculators) {
+                        System.out.println(calculator.ping());
+                    }
+                }
+            } catch (Exception e) {
+                // Stop reporting when interrupted
+            }
+        }, "price-stats-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
 }
@@ -0,0 +1,72 @@
+package org.example;
+
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * Compares loopback call latency of PriceCalculatorImpl exported with the default
+ * RMI sockets, with TunedSocketFactory, and with TunedSocketFactory plus compression.
+ *
+ * Usage: SocketFactoryBenchmark [calls] [batchSize]
+ */
+public class SocketFactoryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        System.out.printf("%-22s %10s %10s %10s %16s%n", "Sockets", "p50 (us)", "p99 (us)", "calls/sec", "batch prices/sec");
+
+        run("Default", new PriceCalculatorImpl(), calls, batchSize);
+        run("TCP_NODELAY + 64 KB", new PriceCalculatorImpl("tuned", PriceAuditor.DISABLED, 0,
+                new TunedSocketFactory(true, 64 * 1024, false),
+                new TunedSocketFactory(true, 64 * 1024, false)), calls, batchSize);
+        run("Tuned + compressed", new PriceCalculatorImpl("compressed", PriceAuditor.DISABLED, 0,
+                new TunedSocketFactory(true, 64 * 1024, true),
+                new TunedSocketFactory(true, 64 * 1024, true)), calls, batchSize);
+    }
+
+    private static void run(String label, PriceCalculatorImpl server, int calls, int batchSize) throws Exception {
+        try {
+            // Call through the stub, not the local object, so every call goes over a socket
+            PriceCalculator calculator = (PriceCalculator) RemoteObject.toStub(server);
+
+            double[] costPrices = new double[batchSize];
+            double[] discountAmounts = new double[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                costPrices[i] = 1000 + i % 5000;
+                discountAmounts[i] = i % 100;
+            }
+
+            // Warm up
+            for (int i = 0; i < Math.min(calls, 5000); i++) {
+                calculator.calculateSellingPrice(i, 1);
+            }
+            calculator.calculateSellingPrices(costPrices, discountAmounts);
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                long callStart = System.nanoTime();
+                calculator.calculateSellingPrice(i, 1);
+                latency.record(System.nanoTime() - callStart);
+            }
+            double callSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            int batches = 50;
+            start = System.nanoTime();
+            for (int i = 0; i < batches; i++) {
+                calculator.calculateSellingPrices(costPrices, discountAmounts);
+            }
+            double batchSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            System.out.printf("%-22s %10.1f %10.1f %,10.0f %,16.0f%n", label,
+                    latency.percentile(0.50) / 1000.0,
+                    latency.percentile(0.99) / 1000.0,
+                    calls / callSeconds,
+                    (double) batches * batchSize / batchSeconds);
+        } finally {
+            UnicastRemoteObject.unexportObject(server, true);
+        }
+    }
+}
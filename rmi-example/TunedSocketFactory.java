@@ -0,0 +1,158 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * RMI socket factory for both ends of a connection that disables Nagle's algorithm,
+ * sets the socket buffer sizes and can optionally compress everything sent.
+ *
+ * The client half is serialized into the stub, so clients pick up the same settings
+ * automatically. RMI reuses connections only between equal factories, which is why
+ * equals and hashCode compare every setting.
+ *
+ * Client sockets also get a read timeout of price.client.timeoutMillis (default 5000),
+ * read in the client's JVM when the socket is created. A blocking RMI call cannot be
+ * interrupted, so this is what ends a call to a server that stopped answering and frees
+ * the calling thread; the call then fails with a RemoteException.
+ */
+public class TunedSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean tcpNoDelay;
+    private final int bufferSize;
+    private final boolean compressed;
+
+    /**
+     * @param tcpNoDelay true to send small calls immediately instead of waiting to fill a packet
+     * @param bufferSize send and receive buffer size in bytes, or 0 to keep the OS default
+     * @param compressed true to deflate the stream, which pays off for large batch calls on slow links
+     */
+    public TunedSocketFactory(boolean tcpNoDelay, int bufferSize, boolean compressed) {
+        this.tcpNoDelay = tcpNoDelay;
+        this.bufferSize = bufferSize;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Creates a factory from the price.socket.tcpNoDelay (default true),
+     * price.socket.bufferSize (default 65536) and price.socket.compress (default false)
+     * system properties.
+     */
+    public static TunedSocketFactory fromSystemProperties() {
+        return new TunedSocketFactory(
+                Boolean.parseBoolean(System.getProperty("price.socket.tcpNoDelay", "true")),
+                Integer.getInteger("price.socket.bufferSize", 64 * 1024),
+                Boolean.getBoolean("price.socket.compress"));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = compressed ? new CompressedSocket() : new Socket();
+        configure(socket);
+        socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, Long.getLong("price.client.timeoutMillis", 5000L)));
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = compressed ? new CompressedSocket() : new Socket();
+                implAccept(socket);
+                configure(socket);
+                return socket;
+            }
+        };
+
+        // The receive buffer must be set before binding to affect the TCP window
+        if (bufferSize > 0) {
+            serverSocket.setReceiveBufferSize(bufferSize);
+        }
+        serverSocket.bind(new InetSocketAddress(port));
+        return serverSocket;
+    }
+
+    private void configure(Socket socket) throws IOException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        socket.setKeepAlive(true);
+        if (bufferSize > 0) {
+            socket.setSendBufferSize(bufferSize);
+            socket.setReceiveBufferSize(bufferSize);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        TunedSocketFactory that = (TunedSocketFactory) other;
+        return tcpNoDelay == that.tcpNoDelay && bufferSize == that.bufferSize && compressed == that.compressed;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tcpNoDelay, bufferSize, compressed);
+    }
+
+    @Override
+    public String toString() {
+        return "TunedSocketFactory[tcpNoDelay=" + tcpNoDelay + ", bufferSize=" + bufferSize
+                + ", compressed=" + compressed + "]";
+    }
+
+    /**
+     * Socket whose streams are deflated. Every flush by RMI ends a compressed block
+     * (SYNC_FLUSH), so a call is never held back waiting for more data.
+     */
+    private static class CompressedSocket extends Socket {
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private InputStream input;
+        private OutputStream output;
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (input == null) {
+                input = new InflaterInputStream(super.getInputStream());
+            }
+            return input;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (output == null) {
+                output = new DeflaterOutputStream(super.getOutputStream(), deflater, 8192, true);
+            }
+            return output;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                // A Deflater passed in by the caller is not released by the stream
+                deflater.end();
+            }
+        }
+    }
+}
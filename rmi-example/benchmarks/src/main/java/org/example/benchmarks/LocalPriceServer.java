@@ -0,0 +1,55 @@
+package org.example.benchmarks;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+import org.example.PriceAuditor;
+import org.example.PriceCalculator;
+import org.example.PriceCalculatorImpl;
+
+/**
+ * In-process PriceServer on a free loopback port, so benchmarks need nothing else running.
+ */
+final class LocalPriceServer implements AutoCloseable {
+
+    static final String BINDING_NAME = "PriceCalculator";
+
+    private final PriceCalculatorImpl calculator;
+    private final Registry registry;
+    private final int port;
+
+    LocalPriceServer() throws IOException {
+        port = freePort();
+        calculator = new PriceCalculatorImpl(BINDING_NAME, PriceAuditor.DISABLED);
+        registry = LocateRegistry.createRegistry(port);
+        registry.rebind(BINDING_NAME, calculator);
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    /**
+     * Looks up a fresh stub the same way PriceClient does.
+     */
+    PriceCalculator lookup() throws RemoteException, NotBoundException {
+        return (PriceCalculator) LocateRegistry.getRegistry("localhost", port).lookup(BINDING_NAME);
+    }
+
+    @Override
+    public void close() throws RemoteException {
+        UnicastRemoteObject.unexportObject(calculator, true);
+        UnicastRemoteObject.unexportObject(registry, true);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.benchmarks;
+
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+
+import org.example.PriceAuditor;
+import org.example.PriceCalculator;
+import org.example.PriceCalculatorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One-off costs a client or server pays before the first pricing call,
+ * reported separately from the per-call benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+
+    private LocalPriceServer server;
+    private Registry registry;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        server = new LocalPriceServer();
+        registry = LocateRegistry.getRegistry("localhost", server.getPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        server.close();
+    }
+
+    /**
+     * Registry round-trip plus deserializing the stub, as PriceClient does at startup.
+     */
+    @Benchmark
+    public PriceCalculator registryLookup() throws Exception {
+        return (PriceCalculator) registry.lookup(LocalPriceServer.BINDING_NAME);
+    }
+
+    /**
+     * Creating a registry stub locally and making the first call on it.
+     */
+    @Benchmark
+    public String[] locateRegistryAndList() throws Exception {
+        return LocateRegistry.getRegistry("localhost", server.getPort()).list();
+    }
+
+    /**
+     * Exporting a new calculator and creating its stub, as PriceServer does per instance.
+     */
+    @Benchmark
+    public Object exportAndCreateStub() throws Exception {
+        PriceCalculatorImpl calculator = new PriceCalculatorImpl("benchmark", PriceAuditor.DISABLED);
+        try {
+            return RemoteObject.toStub(calculator);
+        } finally {
+            UnicastRemoteObject.unexportObject(calculator, true);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the Java serialization RMI does for each call, without any network.
+ * RMI writes primitive arguments with writeDouble and arrays with writeObject on a
+ * new object stream per call, which is what these benchmarks repeat.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshallingBenchmark {
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        @Param({"100", "1000", "10000"})
+        int batchSize;
+
+        double[] costPrices;
+        byte[] marshalled;
+
+        @Setup
+        public void createData() throws IOException {
+            costPrices = new double[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                costPrices[i] = 1000 + i;
+            }
+            marshalled = marshal(costPrices);
+        }
+    }
+
+    @Benchmark
+    public byte[] marshalSingleCall() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeDouble(5000);
+            out.writeDouble(50);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] marshalBatch(Batch batch) throws IOException {
+        return marshal(batch.costPrices);
+    }
+
+    @Benchmark
+    public double[] unmarshalBatch(Batch batch) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(batch.marshalled))) {
+            return (double[]) in.readObject();
+        }
+    }
+
+    private static byte[] marshal(double[] values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(values.length * 8 + 64);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(values);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.example.PriceCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of one loopback pricing call. SampleTime mode reports the p50, p90, p99
+ * and p99.9 of every sampled call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    @Param({"1000"})
+    private int batchSize;
+
+    private LocalPriceServer server;
+    private PriceCalculator calculator;
+    private double[] costPrices;
+    private double[] discountAmounts;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        server = new LocalPriceServer();
+        calculator = server.lookup();
+
+        costPrices = new double[batchSize];
+        discountAmounts = new double[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            costPrices[i] = 1000 + i;
+            discountAmounts[i] = i % 100;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Benchmark
+    public double calculateSellingPrice() throws Exception {
+        return calculator.calculateSellingPrice(5000, 50);
+    }
+
+    @Benchmark
+    public double[] calculateSellingPrices() throws Exception {
+        return calculator.calculateSellingPrices(costPrices, discountAmounts);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.example.PriceCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calls per second through one shared stub as the number of client threads grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThroughputBenchmark {
+
+    private LocalPriceServer server;
+    private PriceCalculator calculator;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        server = new LocalPriceServer();
+        calculator = server.lookup();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public double threads01() throws Exception {
+        return calculator.calculateSellingPrice(5000, 50);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public double threads04() throws Exception {
+        return calculator.calculateSellingPrice(5000, 50);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public double threads16() throws Exception {
+        return calculator.calculateSellingPrice(5000, 50);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public double threads64() throws Exception {
+        return calculator.calculateSellingPrice(5000, 50);
+    }
+}
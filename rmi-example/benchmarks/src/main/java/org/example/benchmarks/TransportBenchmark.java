@@ -0,0 +1,99 @@
+package org.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.example.BinaryPriceCalculator;
+import org.example.BinaryPriceServer;
+import org.example.PriceAuditor;
+import org.example.PriceCalculator;
+import org.example.PriceCalculatorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares Java RMI with the BinaryPriceServer transport on localhost.
+ * Both serve the same PriceCalculator contract.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"rmi", "binary"})
+    private String transport;
+
+    private LocalPriceServer rmiServer;
+    private BinaryPriceServer binaryServer;
+    private BinaryPriceCalculator binaryClient;
+    private PriceCalculator calculator;
+
+    private final double[] costPrices = new double[1000];
+    private final double[] discountAmounts = new double[1000];
+
+    @Setup(Level.Trial)
+    public void connect() throws Exception {
+        for (int i = 0; i < costPrices.length; i++) {
+            costPrices[i] = 1000 + i;
+            discountAmounts[i] = i % 100;
+        }
+
+        if ("rmi".equals(transport)) {
+            rmiServer = new LocalPriceServer();
+            calculator = rmiServer.lookup();
+        } else {
+            binaryServer = new BinaryPriceServer(new PriceCalculatorImpl("binary", PriceAuditor.DISABLED), 0);
+            binaryClient = new BinaryPriceCalculator("localhost", binaryServer.getPort(), 5000);
+            calculator = binaryClient;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws Exception {
+        if (rmiServer != null) {
+            rmiServer.close();
+        }
+        if (binaryClient != null) {
+            binaryClient.close();
+            binaryServer.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double singleCallLatency() throws Exception {
+        return calculator.calculateSellingPrice(5000, 50);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double[] batchCallLatency() throws Exception {
+        return calculator.calculateSellingPrices(costPrices, discountAmounts);
+    }
+
+    /**
+     * Sixteen threads share one client; the binary transport pipelines their calls
+     * over a single connection while RMI opens a connection per concurrent call.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(16)
+    public double throughput16Threads() throws Exception {
+        return calculator.calculateSellingPrice(5000, 50);
+    }
+}